@@ -0,0 +1,317 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+public class AnimationRenderer {
+	private final int threads;
+	private final Semaphore framesInFlight;
+
+	private long pixelsReused = 0;
+	private long pixelsTotal = 0;
+
+	/*
+	 * Renders every frame of a ZoomAnimation to a numbered PNG file (frame00000.png, frame00001.png, ...) ready to
+	 * be turned into a video. Several frames are rendered at once, one per thread of a fixed size pool, with each
+	 * frame calculated by a single thread. For a run of small frames this keeps every core busy with far less
+	 * waiting than splitting each frame into tiles. At most two frames per thread are started before the earlier
+	 * ones have been written, so memory use does not grow with the length of the animation.
+	 *
+	 * Each frame is seeded from the iteration data of the frame before it. The pixels whose column and row line up
+	 * with the previous frame (see ViewTransition.alignedColumns) are copied rather than calculated. A frame first
+	 * calculates every pixel it cannot copy, and only then waits for the previous frame's IterationMap, so frames
+	 * still run side by side. How much can be copied depends on the animation: a pan reuses everything except the
+	 * uncovered strips, and a zoom by a whole number per frame reuses the pixels on the shared grid, but a smooth
+	 * zoom by a fraction per frame has almost no points in common between frames and is calculated in full.
+	 *
+	 * Usage:
+	 *   java -cp out AnimationRenderer --to -0.7454,-0.7446,0.1127,0.1133 --frames 120 --size 640x480 --out frames
+	 *
+	 * Options:
+	 *   --type mandelbrot|julia               which fractal, mandelbrot by default
+	 *   --from REALSTART,REALEND,IMAGSTART,IMAGEND  the first frame, the whole set by default
+	 *   --to REALSTART,REALEND,IMAGSTART,IMAGEND    the last frame
+	 *   --julia REAL,IMAG                     the julia constant, -0.5,0.5 by default
+	 *   --frames N                            number of frames, 60 by default
+	 *   --size WIDTHxHEIGHT                   size of each frame, 640x480 by default
+	 *   --iterations N                        maximum number of iterations, 100 by default
+	 *   --threads N                           frames rendered at once, one per core by default
+	 *   --out DIRECTORY                       where the frames are written, frames by default
+	 */
+
+	public AnimationRenderer(int threads){
+		this.threads = Math.max(1, threads);
+		this.framesInFlight = new Semaphore(this.threads * 2);
+	}
+
+	public double getReusedFraction(){
+		return (pixelsTotal == 0) ? 0.0 : (double) pixelsReused / pixelsTotal;
+	}
+
+	public void render(ZoomAnimation animation, File directory) throws IOException {
+		if (directory.isDirectory() == false && directory.mkdirs() == false){
+			throw new IOException("Could not create the directory " + directory);
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new BackgroundRenderer.DaemonThreadFactory());
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		CompletableFuture<IterationMap> previousMap = CompletableFuture.completedFuture(null);
+		FractalView previousView = null;
+
+		try {
+			for (int frame = 0; frame < animation.frames; frame++){
+				framesInFlight.acquire();
+
+				CompletableFuture<IterationMap> map = new CompletableFuture<IterationMap>();
+				File file = new File(directory, String.format("frame%05d.png", frame));
+				FractalView view = animation.frame(frame);
+				results.add(pool.submit(new FrameTask(view, previousView, previousMap, map, file)));
+				previousView = view;
+				previousMap = map;
+			}
+
+			for (Future<Integer> result : results){
+				pixelsReused += result.get();
+				pixelsTotal += (long) animation.width * animation.height;
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while rendering the animation", e);
+		} catch (ExecutionException e){
+			if (e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+
+			throw new IOException("There was a problem rendering the animation", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		/*
+		 * Frames are handed to the pool in order and the pool takes them in order, so the frame a task waits on has
+		 * always been started already and the chain of waits can never deadlock.
+		 */
+	}
+
+	class FrameTask implements Callable<Integer> {
+		private final FractalView view;
+		private final FractalView previousView;
+		private final CompletableFuture<IterationMap> map;
+		private final File file;
+		private CompletableFuture<IterationMap> previousMap;
+
+		public FrameTask(FractalView view, FractalView previousView, CompletableFuture<IterationMap> previousMap,
+				CompletableFuture<IterationMap> map, File file){
+			this.view = view;
+			this.previousView = previousView;
+			this.previousMap = previousMap;
+			this.map = map;
+			this.file = file;
+		}
+
+		public Integer call() throws IOException {
+			try {
+				IterationMap frameMap = new IterationMap(view);
+				int[] columns = null;
+				int[] rows = null;
+				int reused = 0;
+
+				if (previousView != null && ViewTransition.sameFractal(previousView, view) == true){
+					columns = ViewTransition.alignedColumns(previousView, view);
+					rows = ViewTransition.alignedRows(previousView, view);
+				}
+
+				try {
+					calculate(frameMap, columns, rows, false);
+
+					if (columns != null){
+						IterationMap previous = previousMap.join();
+
+						if (previous != null){
+							reused = copyAligned(previous, frameMap, columns, rows);
+						} else {
+							calculate(frameMap, columns, rows, true); //The previous frame failed, so nothing can be copied.
+						}
+					}
+
+					previousMap = null; //Lets the previous frame's map be collected once this frame has what it needs.
+					map.complete(frameMap);
+				} catch (RuntimeException | Error e){
+					map.complete(null);
+					throw e;
+				}
+
+				int[] pixels = new int[view.width * view.height];
+				frameMap.colour(Palette.forView(view), pixels);
+
+				try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16)){
+					PngStripWriter writer = new PngStripWriter(out, view.width, view.height);
+					writer.writeRows(pixels, view.height);
+					writer.finish();
+				}
+
+				return reused;
+			} finally {
+				framesInFlight.release();
+			}
+
+			//Returns the number of pixels copied from the previous frame.
+		}
+
+		private void calculate(IterationMap frameMap, int[] columns, int[] rows, boolean aligned){
+			PixelCalculator calculator = view.createPixelCalculator();
+			int[] counts = new int[view.width];
+			double[] moduliSquared = new double[view.width];
+
+			for (int y = 0; y < view.height; y++){
+				int x = 0;
+
+				while (x < view.width){
+					if (isAligned(columns, rows, x, y) != aligned){
+						x++;
+						continue;
+					}
+
+					int runEnd = x + 1;
+					while (runEnd < view.width && isAligned(columns, rows, runEnd, y) == aligned){
+						runEnd++;
+					}
+
+					calculator.prepareTile(x, y, runEnd, y + 1);
+					calculator.calculateRow(y, x, runEnd, counts, moduliSquared);
+
+					for (int i = x; i < runEnd; i++){
+						if (counts[i - x] == view.numberOfIterations){
+							frameMap.setInside(i, y);
+						} else {
+							frameMap.setEscaped(i, y, counts[i - x], moduliSquared[i - x]);
+						}
+					}
+
+					x = runEnd;
+				}
+			}
+
+			//Calculates either every pixel that cannot be copied from the previous frame, or (if aligned is true) every pixel that can.
+		}
+	}
+
+	private static boolean isAligned(int[] columns, int[] rows, int x, int y){
+		return columns != null && columns[x] >= 0 && rows[y] >= 0;
+	}
+
+	private static int copyAligned(IterationMap from, IterationMap to, int[] columns, int[] rows){
+		int copied = 0;
+
+		for (int y = 0; y < rows.length; y++){
+			if (rows[y] < 0){
+				continue;
+			}
+
+			for (int x = 0; x < columns.length; x++){
+				if (columns[x] >= 0){
+					to.copyPixel(from, columns[x], rows[y], x, y);
+					copied++;
+				}
+			}
+		}
+
+		return copied;
+	}
+
+	public static void main(String[] args){
+		String type = "mandelbrot";
+		String from = null;
+		String to = "-0.7454,-0.7446,0.1127,0.1133";
+		String julia = "-0.5,0.5";
+		String size = "640x480";
+		int frames = 60;
+		int iterations = 100;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String outDirectory = "frames";
+
+		try {
+			for (int i = 0; i < args.length; i += 2){
+				String value = (i + 1 < args.length) ? args[i + 1] : "";
+
+				switch (args[i]){
+					case "--type": type = value.toLowerCase(); break;
+					case "--from": from = value; break;
+					case "--to": to = value; break;
+					case "--julia": julia = value; break;
+					case "--frames": frames = Integer.parseInt(value); break;
+					case "--size": size = value.toLowerCase(); break;
+					case "--iterations": iterations = Integer.parseInt(value); break;
+					case "--threads": threads = Integer.parseInt(value); break;
+					case "--out": outDirectory = value; break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			boolean isJulia = type.equals("julia");
+			if (isJulia == false && type.equals("mandelbrot") == false){
+				throw new IllegalArgumentException("--type must be mandelbrot or julia");
+			}
+
+			PreciseBounds start = bounds((from != null) ? from : (isJulia ? "-2.0,2.0,-1.6,1.6" : "-2.0,1.0,-1.2,1.2"));
+			PreciseBounds end = bounds(to);
+			BigDecimal[] constant = numbers(julia, 2);
+			String[] dimensions = size.split("x");
+			int width = Integer.parseInt(dimensions[0].trim());
+			int height = Integer.parseInt(dimensions[1].trim());
+
+			if (width < 1 || height < 1 || iterations < 1 || frames < 1){
+				throw new IllegalArgumentException("The size, number of frames and number of iterations must be positive");
+			}
+
+			ZoomAnimation animation = new ZoomAnimation(isJulia ? FractalType.JULIA : FractalType.MANDELBROT, start, end, frames,
+					width, height, iterations, constant[0].doubleValue(), constant[1].doubleValue());
+			AnimationRenderer renderer = new AnimationRenderer(threads);
+			long startTime = System.nanoTime();
+
+			renderer.render(animation, new File(outDirectory));
+
+			double seconds = (System.nanoTime() - startTime) / 1e9;
+			System.out.printf("Wrote %d frames (%dx%d, %d iterations) to %s in %.1fs: %.2f frames per second on %d threads, %.1f%% of pixels reused%n",
+					frames, width, height, iterations, outDirectory, seconds, frames / seconds, threads, renderer.getReusedFraction() * 100);
+		} catch (IOException e){
+			System.err.println("There was a problem creating your files: " + e.getMessage());
+			System.exit(1);
+		} catch (RuntimeException e){
+			System.err.println(e.getMessage());
+			System.err.println("Usage: AnimationRenderer [--type mandelbrot|julia] [--from REALSTART,REALEND,IMAGSTART,IMAGEND] [--to ...]");
+			System.err.println("                         [--julia REAL,IMAG] [--frames N] [--size WIDTHxHEIGHT] [--iterations N] [--threads N] [--out DIRECTORY]");
+			System.exit(2);
+		}
+	}
+
+	private static PreciseBounds bounds(String value){
+		BigDecimal[] axes = numbers(value, 4);
+		return new PreciseBounds(axes[0], axes[1], axes[2], axes[3]);
+	}
+
+	private static BigDecimal[] numbers(String value, int count){
+		String[] parts = value.split(",");
+		if (parts.length != count){
+			throw new IllegalArgumentException("Expected " + count + " numbers separated by commas: " + value);
+		}
+
+		BigDecimal[] numbers = new BigDecimal[count];
+		for (int i = 0; i < count; i++){
+			numbers[i] = new BigDecimal(parts[i].trim());
+		}
+
+		return numbers;
+	}
+}
@@ -0,0 +1,327 @@
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
+
+public class BackgroundRenderer {
+	private static final int[] PASSSTEPS = {8, 4, 1};
+	//Each render is done in passes at 1/8, 1/4 and then full resolution.
+
+	private final RenderEngine engine;
+	private final ImageListener listener;
+	private final ExecutorService executor;
+
+	private FractalView requestedView;
+	private AtomicBoolean currentCancelled;
+
+	private volatile RenderMetrics metrics;
+	//Where the statistics of each finished render are also recorded, if set.
+
+	private volatile TileCache tileCache;
+	//Tiles of earlier full resolution renders, used to build views that have been seen before, if set.
+
+	private volatile RenderScheduler scheduler;
+	//Told whenever a new view is asked for, so speculative renders of views the user did not go to are stopped.
+
+	private final AtomicInteger rendersQueued = new AtomicInteger(0);
+
+	private IterationMap finishedMap;
+	private BufferedImage finishedImage;
+	//The iteration data and image of the last full resolution render that finished, kept so they can be reused.
+
+	/*
+	 * A BackgroundRenderer renders images away from the Event Dispatch Thread so the GUI never freezes.
+	 * Each request is first rendered at a low resolution so there is something on screen almost straight away,
+	 * then refined until the full resolution image is ready. When a new view is requested the render in
+	 * progress is cancelled, so clicking Update or zooming repeatedly never builds up a queue of old renders.
+	 * Only handing the finished image to the panel happens on the Event Dispatch Thread.
+	 * 
+	 * The previous finished image is reused where it can be. After a pan only the newly uncovered strips
+	 * are rendered, copying the rest of its kept IterationMap across, and after a zoom the old pixels are
+	 * stretched into place as a first preview.
+	 */
+
+	public interface ImageListener {
+		void imageReady(FractalView view, BufferedImage image, int step, boolean complete);
+
+		/*
+		 * Called on the Event Dispatch Thread each time a pass finishes. step is how many screen pixels each image
+		 * pixel covers, and complete is true only for the final full resolution image.
+		 */
+	}
+
+	public BackgroundRenderer(RenderEngine engine, ImageListener listener){
+		this.engine = engine;
+		this.listener = listener;
+		this.executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+	}
+
+	public void requestRender(FractalView view){
+		requestRender(view, "Repaint");
+	}
+
+	public synchronized void requestRender(FractalView view, String source){
+		if (view.equals(requestedView)){
+			return; //Already rendering (or rendered) this exact view.
+		}
+
+		if (currentCancelled != null){
+			currentCancelled.set(true);
+		}
+
+		if (scheduler != null){
+			scheduler.cancelSpeculation();
+		}
+
+		requestedView = view;
+		currentCancelled = new AtomicBoolean(false);
+		rendersQueued.incrementAndGet();
+		executor.execute(new RenderPasses(view, source, currentCancelled));
+
+		//source says what asked for the render, for the Render Request flight recorder event.
+	}
+
+	public synchronized IterationMap getIterationMap(){
+		return finishedMap;
+
+		//Iteration data of the last full resolution render that finished, or null if nothing has finished yet.
+	}
+
+	private synchronized void finished(IterationMap map, BufferedImage image, RenderStatistics statistics){
+		finishedMap = map;
+		finishedImage = image;
+
+		if (metrics != null){
+			metrics.record(statistics);
+		}
+	}
+
+	public void setMetrics(RenderMetrics metrics){
+		this.metrics = metrics;
+	}
+
+	public void setTileCache(TileCache tileCache){
+		this.tileCache = tileCache;
+	}
+
+	public void setScheduler(RenderScheduler scheduler){
+		this.scheduler = scheduler;
+	}
+
+	public boolean isIdle(){
+		return rendersQueued.get() == 0;
+
+		//True when no render is running or waiting to run, so spare time can be given to speculative renders.
+	}
+
+	private synchronized BufferedImage getFinishedImage(){
+		return finishedImage;
+	}
+
+	public synchronized FractalView getRequestedView(){
+		return requestedView;
+	}
+
+	public synchronized void cancel(){
+		if (currentCancelled != null){
+			currentCancelled.set(true);
+		}
+
+		if (scheduler != null){
+			scheduler.cancelSpeculation();
+		}
+
+		requestedView = null;
+	}
+
+	class RenderPasses implements Runnable {
+		private final FractalView view;
+		private final String source;
+		private final AtomicBoolean cancelled;
+
+		public RenderPasses(FractalView view, String source, AtomicBoolean cancelled){
+			this.view = view;
+			this.source = source;
+			this.cancelled = cancelled;
+		}
+
+		public void run(){
+			RenderEvents.Request event = new RenderEvents.Request();
+			event.begin();
+
+			try {
+				renderPasses();
+			} finally {
+				rendersQueued.decrementAndGet();
+				event.end();
+
+				if (event.shouldCommit()){
+					event.setView(view);
+					event.source = source;
+					event.cancelled = cancelled.get();
+					event.commit();
+				}
+			}
+		}
+
+		private void renderPasses(){
+			IterationMap previousMap = getIterationMap();
+			BufferedImage previousImage = getFinishedImage();
+			double zoomFactor = 0.0;
+
+			if (renderFromCache() == true){
+				return; //Also the first render after launch, when the view may be in the TileStore from an earlier session.
+			}
+
+			if (previousMap != null){
+				FractalView previousView = previousMap.view;
+
+				if (renderPan(previousMap) == true){
+					return;
+				}
+
+				BufferedImage preview = ViewTransition.remap(previousView, previousImage, view);
+
+				if (preview != null){
+					SwingUtilities.invokeLater(new PublishImage(view, preview, 1, false, cancelled));
+					zoomFactor = ViewTransition.zoomFactor(previousView, view);
+				}
+			}
+
+			for (int step : PASSSTEPS){
+				if (cancelled.get() == true){
+					return;
+				}
+
+				if (step > 1 && (view.width < step * 2 || view.height < step * 2)){
+					continue; //Image is too small for this preview pass to be worth doing.
+				}
+
+				if (step > 1 && step <= zoomFactor){
+					continue; //The stretched previous image is already at least this detailed.
+				}
+
+				FractalView passView = (step == 1) ? view : view.coarse(step);
+				IterationMap map = new IterationMap(passView);
+				BufferedImage image = new BufferedImage(passView.width, passView.height, BufferedImage.TYPE_INT_ARGB);
+				RenderStatistics statistics = new RenderStatistics();
+
+				if (step == 1 && tileCache != null && tileCache.canCache(view) == true){
+					if (tileCache.render(engine, map, cancelled, statistics) == false){
+						return;
+					}
+
+					colour(map, image, statistics);
+				} else if (engine.render(map, image, cancelled, statistics) == false){
+					return;
+				}
+
+				if (step == 1){
+					finished(map, image, statistics);
+				}
+
+				SwingUtilities.invokeLater(new PublishImage(view, image, step, step == 1, cancelled));
+			}
+		}
+
+		private boolean renderFromCache(){
+			TileCache cache = tileCache;
+
+			if (cache == null || cache.covers(view) == false){
+				return false;
+			}
+
+			IterationMap map = new IterationMap(view);
+			BufferedImage image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_ARGB);
+			RenderStatistics statistics = new RenderStatistics();
+
+			if (cache.render(engine, map, cancelled, statistics) == false){
+				return true;
+			}
+
+			colour(map, image, statistics);
+			finished(map, image, statistics);
+			SwingUtilities.invokeLater(new PublishImage(view, image, 1, true, cancelled));
+			return true;
+
+			/*
+			 * When every tile of the view is already in the tile cache the full image can be put together straight
+			 * away, so there is no point showing a stretched or low resolution preview first. This is tried before
+			 * renderPan, since after a pan into an area that was prefetched nothing needs iterating at all. Returns
+			 * false if any tile is missing.
+			 */
+		}
+
+		private void colour(IterationMap map, BufferedImage image, RenderStatistics statistics){
+			long colourStart = System.nanoTime();
+			map.colour(Palette.forView(view), RenderEngine.rasterPixels(view, image));
+			statistics.addColourTime(System.nanoTime() - colourStart);
+		}
+
+		private boolean renderPan(IterationMap previousMap){
+			int[] offset = ViewTransition.panOffset(previousMap.view, view);
+
+			if (offset == null || Math.abs(offset[0]) >= view.width || Math.abs(offset[1]) >= view.height){
+				return false;
+			}
+
+			IterationMap map = previousMap.pan(view, offset[0], offset[1]);
+			RenderStatistics statistics = new RenderStatistics();
+
+			for (int[] strip : ViewTransition.exposedStrips(view.width, view.height, offset[0], offset[1])){
+				if (engine.render(map, null, cancelled, statistics, strip[0], strip[1], strip[2], strip[3]) == false){
+					return true;
+				}
+			}
+
+			BufferedImage image = map.toImage(Palette.forView(view));
+			finished(map, image, statistics);
+			SwingUtilities.invokeLater(new PublishImage(view, image, 1, true, cancelled));
+			return true;
+
+			/*
+			 * When the view has only been moved by a whole number of pixels, the iteration data still on screen is copied
+			 * across and only the uncovered strips are iterated before the whole map is colored, so no preview passes are needed. Returns false if
+			 * the change was not a pan that overlaps the previous image.
+			 */
+		}
+	}
+
+	class PublishImage implements Runnable {
+		private final FractalView view;
+		private final BufferedImage image;
+		private final int step;
+		private final boolean complete;
+		private final AtomicBoolean cancelled;
+
+		public PublishImage(FractalView view, BufferedImage image, int step, boolean complete, AtomicBoolean cancelled){
+			this.view = view;
+			this.image = image;
+			this.step = step;
+			this.complete = complete;
+			this.cancelled = cancelled;
+		}
+
+		public void run(){
+			if (cancelled.get() == false){
+				listener.imageReady(view, image, step, complete);
+			}
+
+			//The cancelled flag is checked again on the Event Dispatch Thread so a stale image is never shown.
+		}
+	}
+
+	static class DaemonThreadFactory implements ThreadFactory {
+
+		public Thread newThread(Runnable r){
+			Thread thread = new Thread(r, "background-renderer");
+			thread.setDaemon(true);
+			return thread;
+
+			//Daemon threads so a render in progress never stops the application from closing.
+		}
+	}
+}
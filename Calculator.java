@@ -7,6 +7,16 @@ public class Calculator {
 	public Complex juliaD;
 	public Complex juliaConstant;
 
+	private double juliaReal;
+	private double juliaImag;
+	private double lastModulusSquared;
+	//Primitive copies of the julia constant and the final |z|^2 used by the iterative kernels below.
+
+	private boolean interiorDetection = true;
+	private long settledByBulbTest = 0;
+	private long settledByCycle = 0;
+	//Counts of how many points were found to be inside the set without running every iteration.
+
 	public Calculator(int numberOfIterations){
 		this.numberOfIterations = numberOfIterations; //Maximum number of iterations is specified 
 		z = new Complex(0.0, 0.0); //Z is initially 0,0 for the Mandelbrot set calculation
@@ -17,6 +27,8 @@ public class Calculator {
 	public Calculator(int numberOfIterations, Complex juliaConstant){
 		this.numberOfIterations = numberOfIterations;
 		this.juliaConstant = juliaConstant;
+		this.juliaReal = juliaConstant.getRealNum();
+		this.juliaImag = juliaConstant.getImagNum();
 
 		//Constructor used when generating julia set image. The complex number constant
 		//that is being used to generate a julia set is passed to the calculator. 
@@ -71,4 +83,107 @@ public class Calculator {
 		}
 
 	}
+
+	public int iterateMandelbrot(double cReal, double cImag){
+		if (interiorDetection == true && isInMainBulbs(cReal, cImag)){
+			settledByBulbTest ++;
+			lastModulusSquared = 0.0;
+			return numberOfIterations;
+		}
+
+		return iterate(0.0, 0.0, cReal, cImag, 0);
+
+		/*
+		 * Iterative version of calcIterations that works only on primitive doubles, so nothing is allocated
+		 * per pixel or per iteration and deep iteration counts cannot overflow the stack. Points in the main
+		 * cardioid or the period 2 bulb never escape, so they are returned as not escaping straight away.
+		 */
+	}
+
+	public int iterateJulia(double zReal, double zImag){
+		return iterate(zReal, zImag, juliaReal, juliaImag, 1);
+
+		//Iterative version of calculateJulia. As before the count starts at 1 and z starts at the pixel value.
+	}
+
+	private int iterate(double zReal, double zImag, double cReal, double cImag, int count){
+		double savedReal = zReal;
+		double savedImag = zImag;
+		int stepsSinceSaved = 0;
+		int savePeriod = 2;
+
+		while (count < numberOfIterations && !(((zReal * zReal) + (zImag * zImag)) > (VALUEOFDIVERGENCE * VALUEOFDIVERGENCE))) {
+			double initReal = zReal;
+			zReal = ((initReal * initReal) - (zImag * zImag)) + cReal;
+			zImag = ((initReal * zImag) + (zImag * initReal)) + cImag;
+			count ++;
+
+			if (interiorDetection == true){
+				if (zReal == savedReal && zImag == savedImag){
+					settledByCycle ++;
+					lastModulusSquared = (zReal * zReal) + (zImag * zImag);
+					return numberOfIterations;
+				}
+
+				stepsSinceSaved ++;
+				if (stepsSinceSaved == savePeriod){
+					savedReal = zReal;
+					savedImag = zImag;
+					stepsSinceSaved = 0;
+					savePeriod = savePeriod * 2;
+				}
+			}
+		}
+
+		lastModulusSquared = (zReal * zReal) + (zImag * zImag);
+		return count;
+
+		/*
+		 * The arithmetic is done in exactly the same order as Complex.square and Complex.add so the escape
+		 * counts are identical to the recursive methods. The final |z|^2 is kept and can be read with
+		 * getLastModulusSquared for smooth colouring.
+		 * 
+		 * Brent's cycle detection is used to spot orbits that have settled into a repeating cycle. A value of z
+		 * is saved and compared against every following value, and the gap before the next save doubles each
+		 * time so cycles of any length are found. Only an exact match counts: the next iterations would then
+		 * repeat forever without escaping, so returning numberOfIterations gives the same answer as running
+		 * every iteration.
+		 */
+	}
+
+	public static boolean isInMainBulbs(double cReal, double cImag){
+		double xShifted = cReal - 0.25;
+		double imagSquared = cImag * cImag;
+		double q = (xShifted * xShifted) + imagSquared;
+
+		if ((q * (q + xShifted)) < (0.25 * imagSquared)){
+			return true; //Inside the main cardioid
+		}
+
+		double xPlusOne = cReal + 1.0;
+		return ((xPlusOne * xPlusOne) + imagSquared) < 0.0625;
+
+		//Inside the period 2 bulb, the circle of radius 1/4 centred on -1.
+	}
+
+	public void setInteriorDetection(boolean interiorDetection){
+		this.interiorDetection = interiorDetection;
+
+		//Interior detection is on by default. Turning it off runs every iteration for every point.
+	}
+
+	public long getSettledByBulbTest(){
+		return settledByBulbTest;
+	}
+
+	public long getSettledByCycle(){
+		return settledByCycle;
+	}
+
+	public double getLastModulusSquared(){
+		return lastModulusSquared;
+
+		//|z|^2 of the final z from the last call to iterateMandelbrot or iterateJulia.
+		//Not meaningful for points found inside the set by the bulb test, where it is 0.
+	}
 }
@@ -0,0 +1,190 @@
+import java.math.BigDecimal;
+
+public class DoubleDoubleCalculator implements PixelCalculator {
+	private static final double ESCAPELIMIT = 4.0;
+
+	private final int numberOfIterations;
+	private double xStartHigh;
+	private double xStartLow;
+	private double yStartHigh;
+	private double yStartLow;
+	private double xScaleHigh;
+	private double xScaleLow;
+	private double yScaleHigh;
+	private double yScaleLow;
+	private int firstRow;
+
+	private double low; //Low part of the result of the last add or multiply.
+	private double lastModulusSquared;
+
+	/*
+	 * Calculates Mandelbrot pixels with double-double arithmetic, where every number is kept as the sum of two
+	 * doubles (a high part and a low part holding the rounding error of the high part). That gives about 32
+	 * significant figures, enough for zooms down to a pixel spacing of about FractalView.DOUBLEDOUBLESAFESPACING,
+	 * and is much quicker than BigDecimal. Every value lives in local variables so nothing is allocated per
+	 * iteration. The add and multiply helpers return the high part and leave the low part in the field low.
+	 * 
+	 * With series approximation perturbation is far quicker than iterating every pixel like this, so in the
+	 * double-double range it is mainly used to calculate the reference orbit for perturbation, which is much
+	 * quicker than doing it with BigDecimals. Iterating every pixel in double-double is kept for when
+	 * perturbation is turned off with -Drender.perturbation=false, as it needs no reference at all.
+	 */
+
+	public DoubleDoubleCalculator(int numberOfIterations){
+		this.numberOfIterations = numberOfIterations;
+
+		//Calculator used only for reference orbits, which is not tied to any pixels.
+	}
+
+	public DoubleDoubleCalculator(FractalView view){
+		this.numberOfIterations = view.numberOfIterations;
+
+		FractalView whole = view.getWhole();
+		BigDecimal xStart = whole.precise.realAxisStart;
+		BigDecimal yStart = whole.precise.imagAxisEnd;
+		BigDecimal xScale = whole.precise.getRealWidth().divide(BigDecimal.valueOf(whole.width), whole.precise.getMathContext(whole.width, whole.height));
+		BigDecimal yScale = whole.precise.imagAxisStart.subtract(whole.precise.imagAxisEnd)
+				.divide(BigDecimal.valueOf(whole.height), whole.precise.getMathContext(whole.width, whole.height));
+		firstRow = view.getFirstRow();
+
+		xStartHigh = xStart.doubleValue();
+		xStartLow = xStart.subtract(new BigDecimal(xStartHigh)).doubleValue();
+		yStartHigh = yStart.doubleValue();
+		yStartLow = yStart.subtract(new BigDecimal(yStartHigh)).doubleValue();
+		xScaleHigh = xScale.doubleValue();
+		xScaleLow = xScale.subtract(new BigDecimal(xScaleHigh)).doubleValue();
+		yScaleHigh = yScale.doubleValue();
+		yScaleLow = yScale.subtract(new BigDecimal(yScaleHigh)).doubleValue();
+
+		//The start of each axis and the distance between pixels are split into high and low parts once per tile. A band uses those of its whole view.
+	}
+
+	public void prepareTile(int xFrom, int yFrom, int xTo, int yTo){}
+
+	public int calculatePixel(int xCord, int row){
+		int yCord = firstRow + row;
+		double cRealHigh = add(xStartHigh, xStartLow, xScaleHigh * xCord, Math.fma(xScaleHigh, xCord, -(xScaleHigh * xCord)) + (xScaleLow * xCord));
+		double cRealLow = low;
+		double cImagHigh = add(yStartHigh, yStartLow, yScaleHigh * yCord, Math.fma(yScaleHigh, yCord, -(yScaleHigh * yCord)) + (yScaleLow * yCord));
+		double cImagLow = low;
+
+		return iterate(cRealHigh, cRealLow, cImagHigh, cImagLow);
+
+		//c = start + scale * coordinate, with the product worked out exactly using a fused multiply add.
+	}
+
+	public int iterate(double cRealHigh, double cRealLow, double cImagHigh, double cImagLow){
+		double zRealHigh = 0.0;
+		double zRealLow = 0.0;
+		double zImagHigh = 0.0;
+		double zImagLow = 0.0;
+		int count = 0;
+
+		while (true){
+			double realSquaredHigh = multiply(zRealHigh, zRealLow, zRealHigh, zRealLow);
+			double realSquaredLow = low;
+			double imagSquaredHigh = multiply(zImagHigh, zImagLow, zImagHigh, zImagLow);
+			double imagSquaredLow = low;
+
+			if (count >= numberOfIterations || (realSquaredHigh + imagSquaredHigh) > ESCAPELIMIT){
+				lastModulusSquared = realSquaredHigh + imagSquaredHigh;
+				return count;
+			}
+
+			double crossHigh = multiply(zRealHigh, zRealLow, zImagHigh, zImagLow);
+			double crossLow = low;
+
+			double differenceHigh = add(realSquaredHigh, realSquaredLow, -imagSquaredHigh, -imagSquaredLow);
+			double differenceLow = low;
+			zRealHigh = add(differenceHigh, differenceLow, cRealHigh, cRealLow);
+			zRealLow = low;
+			zImagHigh = add(2 * crossHigh, 2 * crossLow, cImagHigh, cImagLow);
+			zImagLow = low;
+
+			count ++;
+		}
+
+		//z = z^2 + c in double-double, counting iterations the same way as Calculator.iterateMandelbrot.
+	}
+
+	public int referenceOrbit(BigDecimal cReal, BigDecimal cImag, double[] orbitReal, double[] orbitImag){
+		double cRealHigh = cReal.doubleValue();
+		double cRealLow = cReal.subtract(new BigDecimal(cRealHigh)).doubleValue();
+		double cImagHigh = cImag.doubleValue();
+		double cImagLow = cImag.subtract(new BigDecimal(cImagHigh)).doubleValue();
+
+		double zRealHigh = 0.0;
+		double zRealLow = 0.0;
+		double zImagHigh = 0.0;
+		double zImagLow = 0.0;
+		int length = 0;
+
+		while (length <= numberOfIterations){
+			orbitReal[length] = zRealHigh;
+			orbitImag[length] = zImagHigh;
+			length ++;
+
+			double realSquaredHigh = multiply(zRealHigh, zRealLow, zRealHigh, zRealLow);
+			double realSquaredLow = low;
+			double imagSquaredHigh = multiply(zImagHigh, zImagLow, zImagHigh, zImagLow);
+			double imagSquaredLow = low;
+
+			if ((realSquaredHigh + imagSquaredHigh) > ESCAPELIMIT){
+				break;
+			}
+
+			double crossHigh = multiply(zRealHigh, zRealLow, zImagHigh, zImagLow);
+			double crossLow = low;
+
+			double differenceHigh = add(realSquaredHigh, realSquaredLow, -imagSquaredHigh, -imagSquaredLow);
+			double differenceLow = low;
+			zRealHigh = add(differenceHigh, differenceLow, cRealHigh, cRealLow);
+			zRealLow = low;
+			zImagHigh = add(2 * crossHigh, 2 * crossLow, cImagHigh, cImagLow);
+			zImagLow = low;
+		}
+
+		return length;
+
+		/*
+		 * Fills in the orbit of c rounded to doubles, in the same way as the BigDecimal loop in
+		 * PerturbationReference, and returns how many values were stored. Stops once the orbit escapes.
+		 */
+	}
+
+	private double add(double aHigh, double aLow, double bHigh, double bLow){
+		double sum = aHigh + bHigh;
+		double bVirtual = sum - aHigh;
+		double error = (aHigh - (sum - bVirtual)) + (bHigh - bVirtual);
+		error = error + (aLow + bLow);
+
+		double high = sum + error;
+		low = error - (high - sum);
+		return high;
+
+		//Knuth's two-sum of the high parts, with the low parts added to the error before renormalising.
+	}
+
+	private double multiply(double aHigh, double aLow, double bHigh, double bLow){
+		double product = aHigh * bHigh;
+		double error = Math.fma(aHigh, bHigh, -product) + ((aHigh * bLow) + (aLow * bHigh));
+
+		double high = product + error;
+		low = error - (high - product);
+		return high;
+
+		//The exact error of the high product comes from a fused multiply add, the low by low term is too small to matter.
+	}
+
+	public double getLastModulusSquared(){
+		return lastModulusSquared;
+	}
+
+	public long getSettledByBulbTest(){
+		return 0;
+	}
+
+	public long getSettledByCycle(){
+		return 0;
+	}
+}
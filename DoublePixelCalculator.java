@@ -0,0 +1,45 @@
+public class DoublePixelCalculator implements PixelCalculator {
+	private final FractalView view;
+	private final Calculator calculator;
+	private final double xScale;
+	private final double yScale;
+	private final double imagAxisEnd;
+	private final int firstRow;
+
+	/*
+	 * Calculates pixels with the double precision kernels of Calculator. This is what is used for every view
+	 * except very deep zooms.
+	 */
+
+	public DoublePixelCalculator(FractalView view){
+		this.view = view;
+		this.calculator = view.createCalculator();
+		this.xScale = view.getXScale();
+		this.yScale = view.getYScale();
+		this.imagAxisEnd = view.getWhole().imagAxisEnd;
+		this.firstRow = view.getFirstRow();
+
+		//Rows are counted from the top of the whole view, so a band samples exactly the rows the whole view would.
+	}
+
+	public void prepareTile(int xFrom, int yFrom, int xTo, int yTo){}
+
+	public int calculatePixel(int xCord, int yCord){
+		double xReal = (xScale * xCord) + view.realAxisStart;
+		double yImag = (yScale * (firstRow + yCord)) + imagAxisEnd;
+
+		return view.iterate(calculator, xReal, yImag);
+	}
+
+	public double getLastModulusSquared(){
+		return calculator.getLastModulusSquared();
+	}
+
+	public long getSettledByBulbTest(){
+		return calculator.getSettledByBulbTest();
+	}
+
+	public long getSettledByCycle(){
+		return calculator.getSettledByCycle();
+	}
+}
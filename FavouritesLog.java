@@ -0,0 +1,366 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class FavouritesLog {
+	private static final int MAGIC = 0x46415631; //"FAV1"
+	private static final int VERSION = 1;
+	public static final int HEADERSIZE = 8;
+	public static final int RECORDSIZE = 20;
+	//Each record is the real and imaginary parts as doubles followed by the CRC32 of those 16 bytes.
+
+	private static final double DEADFRACTION = 0.25;
+	//The log is compacted whenever more than this fraction of its records are duplicates.
+
+	private final Path path;
+	private final List<Complex> favourites = new ArrayList<Complex>();
+	private final HashSet<Key> keys = new HashSet<Key>();
+	private FileChannel channel;
+	private FileChannel lockChannel;
+	private FileLock lock;
+	private int deadRecords = 0;
+	private boolean truncated = false;
+
+	/*
+	 * Stores the Julia favourites as an append-only binary log rather than a text file that is rewritten in full
+	 * every time a favourite is added. Adding a favourite writes one 20 byte record to the end of the file and
+	 * forces it to disk, so the time taken does not grow with the number of favourites, and a crash can at worst
+	 * lose the record being written, never the ones before it.
+	 *
+	 * The file starts with an 8 byte header (the magic number and version). On opening, the whole file is read
+	 * into one buffer with a single FileChannel read and the records are decoded straight out of it, which is far
+	 * quicker than splitting and parsing lines of text. It is not memory mapped, since Windows will not let a
+	 * mapped file be truncated or replaced, which opening may need to do. Every record carries its own checksum.
+	 * Reading stops at the first record that is cut short or whose checksum does not match, which is what a crash
+	 * part way through an append leaves behind, and that tail is cut off the file.
+	 *
+	 * Only one viewer at a time may write the log. It holds a lock on a .lock file next to the log for as long as
+	 * the log is open, and a second viewer that finds the lock taken opens the log read only: it sees the favourites
+	 * that were there when it started, but cannot add any. Without this a compaction in one viewer would replace
+	 * the file under the other, whose appends would then go to the old, deleted file and be lost.
+	 *
+	 * The same constant is only kept once. Duplicates can still end up in the file from the old text file.
+	 * Whenever more than a quarter of the records are duplicates, checked on opening and after every append, the
+	 * file is compacted: the live records are written to a new file, which is forced to disk and then moved over
+	 * the old one in a single step, so either the old or the new file is there whatever happens. A compaction that
+	 * fails is tried again after the next append.
+	 *
+	 * The first time the log is opened and there is no log yet, the favourites are migrated from the old text file,
+	 * which is then renamed so it is not migrated again.
+	 */
+
+	private FavouritesLog(Path path){
+		this.path = path;
+	}
+
+	public static FavouritesLog open(Path path, Path textFile) throws IOException {
+		FavouritesLog log = new FavouritesLog(path);
+		log.lockChannel = FileChannel.open(path.resolveSibling(path.getFileName() + ".lock"), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+
+		try {
+			log.lock = log.lockChannel.tryLock();
+		} catch (OverlappingFileLockException e){
+			log.lock = null; //Already open for writing elsewhere in this process.
+		} catch (IOException e){
+			log.lockChannel.close();
+			throw e;
+		}
+
+		try {
+			if (log.lock == null){
+				if (Files.exists(path) == true){
+					log.read();
+				}
+
+				return log; //Read only, another viewer is writing the log.
+			}
+
+			if (Files.exists(path) == false && textFile != null && Files.exists(textFile) == true){
+				migrate(textFile, path);
+			}
+
+			if (Files.exists(path) == false){
+				writeLog(path, new ArrayList<Complex>());
+			}
+
+			long validLength = log.read();
+
+			if (validLength < Files.size(path)){
+				try (FileChannel repair = FileChannel.open(path, StandardOpenOption.WRITE)){
+					repair.truncate(validLength);
+					repair.force(true);
+				}
+
+				log.truncated = true; //A damaged or half written tail was cut off.
+			}
+
+			log.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			log.compactIfNeeded();
+			return log;
+		} catch (IOException e){
+			log.lockChannel.close(); //Also releases the lock.
+			throw e;
+		}
+	}
+
+	private long read() throws IOException {
+		try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)){
+			long size = reader.size();
+
+			if (size < HEADERSIZE){
+				throw new IOException(path + " is not a favourites log");
+			}
+
+			if (size > Integer.MAX_VALUE){
+				throw new IOException(path + " is too big to be a favourites log");
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && reader.read(buffer) >= 0){
+				//Normally a single read.
+			}
+
+			size = buffer.position();
+
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+				throw new IOException(path + " is not a favourites log");
+			}
+
+			byte[] data = new byte[16];
+			CRC32 crc = new CRC32();
+			long position = HEADERSIZE;
+
+			while (position + RECORDSIZE <= size){
+				int i = (int) position;
+				buffer.get(i, data);
+				crc.reset();
+				crc.update(data);
+
+				if ((int) crc.getValue() != buffer.getInt(i + 16)){
+					break; //Everything from a damaged record on is treated as a torn write.
+				}
+
+				add(buffer.getDouble(i), buffer.getDouble(i + 8));
+				position += RECORDSIZE;
+			}
+
+			return position;
+		}
+
+		//Reads every valid record and returns where the valid part of the file ends.
+	}
+
+	private boolean add(double real, double imag){
+		if (keys.add(new Key(real, imag)) == false){
+			deadRecords ++;
+			return false;
+		}
+
+		favourites.add(new Complex(real, imag));
+		return true;
+	}
+
+	public List<Complex> getFavourites(){
+		return favourites;
+
+		//In the order they were added. Must not be changed, use append instead.
+	}
+
+	public int getDeadRecords(){
+		return deadRecords;
+	}
+
+	public boolean wasTruncated(){
+		return truncated;
+	}
+
+	public boolean isReadOnly(){
+		return lock == null;
+
+		//True when another viewer has the log open, so favourites cannot be added from this one.
+	}
+
+	public synchronized boolean append(Complex favourite) throws IOException {
+		double real = favourite.getRealNum();
+		double imag = favourite.getImagNum();
+
+		if (keys.contains(new Key(real, imag)) == true){
+			return false;
+		}
+
+		if (isReadOnly() == true){
+			throw new IOException(path + " is open in another viewer");
+		}
+
+		ByteBuffer record = record(real, imag);
+		long size = channel.size();
+
+		try {
+			while (record.hasRemaining()){
+				channel.write(record);
+			}
+
+			channel.force(false);
+		} catch (IOException e){
+			try {
+				channel.truncate(size);
+			} catch (IOException f){
+				e.addSuppressed(f);
+				channel.close(); //Refuses any more appends, which would land after the torn record and be lost on reopening.
+			}
+
+			throw e;
+		}
+
+		add(real, imag);
+		compactIfNeeded();
+		return true;
+
+		/*
+		 * Returns false, without writing anything, if the constant is already a favourite. If the write fails part
+		 * way the file is cut back to where it was, so a torn record never ends up in front of later ones.
+		 */
+	}
+
+	private void compactIfNeeded(){
+		if (deadRecords == 0 || deadRecords <= (favourites.size() + deadRecords) * DEADFRACTION){
+			return;
+		}
+
+		try {
+			compact();
+		} catch (IOException e){
+			System.err.println("The favourites log could not be compacted, it will be tried again later: " + e.getMessage());
+		}
+
+		//A log that could not be compacted is still complete, it just has duplicates in it, so this never fails.
+	}
+
+	public synchronized void compact() throws IOException {
+		if (isReadOnly() == true){
+			throw new IOException(path + " is open in another viewer");
+		}
+
+		if (channel != null){
+			channel.close(); //Windows will not replace a file that is still open.
+		}
+
+		try {
+			writeLog(path, favourites);
+			deadRecords = 0;
+		} finally {
+			if (channel != null){
+				channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+			}
+		}
+
+		//Rewrites the file with only the live records. Appends carry on to whichever file is there afterwards.
+	}
+
+	public synchronized void close() throws IOException {
+		try {
+			if (channel != null){
+				channel.close();
+			}
+		} finally {
+			lockChannel.close(); //Also releases the lock, so another viewer can write the log.
+		}
+	}
+
+	private static void writeLog(Path path, List<Complex> favourites) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		ByteBuffer header = ByteBuffer.allocate(HEADERSIZE);
+		header.putInt(MAGIC).putInt(VERSION).flip();
+
+		try (FileChannel writer = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+			while (header.hasRemaining()){
+				writer.write(header);
+			}
+
+			for (Complex favourite : favourites){
+				ByteBuffer record = record(favourite.getRealNum(), favourite.getImagNum());
+				while (record.hasRemaining()){
+					writer.write(record);
+				}
+			}
+
+			writer.force(true);
+		}
+
+		Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		//Writes a whole log to a temporary file and then moves it into place, so the old file is only replaced once the new one is complete.
+	}
+
+	private static ByteBuffer record(double real, double imag){
+		ByteBuffer record = ByteBuffer.allocate(RECORDSIZE);
+		record.putDouble(real).putDouble(imag);
+
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 0, 16);
+		record.putInt((int) crc.getValue());
+		record.flip();
+		return record;
+	}
+
+	private static void migrate(Path textFile, Path path) throws IOException {
+		List<Complex> favourites = new ArrayList<Complex>();
+
+		try (BufferedReader reader = Files.newBufferedReader(textFile, StandardCharsets.UTF_8)){
+			String line;
+
+			while ((line = reader.readLine()) != null){
+				String[] parts = line.split(":");
+
+				try {
+					favourites.add(new Complex(Double.parseDouble(parts[0]), Double.parseDouble(parts[1])));
+				} catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+					//Lines that are not a favourite are skipped, as they were when the text file was read.
+				}
+			}
+		}
+
+		writeLog(path, favourites);
+		Files.move(textFile, textFile.resolveSibling(textFile.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+
+		/*
+		 * Copies every favourite from the old "real:imaginary" text file into a new log. Duplicates are copied too
+		 * and dropped when the log is read. The text file is kept, renamed, in case the old version of the viewer
+		 * is needed.
+		 */
+	}
+
+	static class Key {
+		private final long real;
+		private final long imag;
+
+		public Key(double real, double imag){
+			this.real = Double.doubleToLongBits(real);
+			this.imag = Double.doubleToLongBits(imag);
+		}
+
+		public boolean equals(Object other){
+			return other instanceof Key && ((Key) other).real == real && ((Key) other).imag == imag;
+		}
+
+		public int hashCode(){
+			return Long.hashCode(real) * 31 + Long.hashCode(imag);
+		}
+
+		//Two favourites are the same if both parts are exactly the same doubles.
+	}
+}
@@ -0,0 +1,16 @@
+public enum FractalType {
+	MANDELBROT(0.99f),
+	JULIA(0.49f);
+
+	private final float hueOffset;
+
+	FractalType(float hueOffset){
+		this.hueOffset = hueOffset;
+
+		//Each fractal has its own starting hue so the Mandelbrot and Julia images have different color schemes.
+	}
+
+	public float getHueOffset(){
+		return hueOffset;
+	}
+}
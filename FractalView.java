@@ -0,0 +1,291 @@
+public class FractalView {
+	public final FractalType type;
+	public final double realAxisStart;
+	public final double realAxisEnd;
+	public final double imagAxisStart;
+	public final double imagAxisEnd;
+	public final int width;
+	public final int height;
+	public final int numberOfIterations;
+	public final double juliaReal;
+	public final double juliaImag;
+	public final PreciseBounds precise;
+
+	public static final double DOUBLESAFESPACING = 2e-15;
+	public static final double DOUBLEDOUBLESAFESPACING = 1e-30;
+	//Below these distances between pixels doubles, and then double-doubles, can no longer place every pixel accurately.
+
+	private static final boolean PERTURBATION = Boolean.parseBoolean(System.getProperty("render.perturbation", "true"));
+	//Perturbation can be turned off for zooms double-double can still handle, mainly to check its results.
+
+	private final double xScale;
+	private final double yScale;
+	private final FractalView whole;
+	private final int firstRow;
+	private PerturbationReference reference;
+	//A band of a view keeps the whole view and the row it starts at, so its rows land exactly on the rows of the whole view.
+
+	/*
+	 * A FractalView is a snapshot of everything needed to render one image: which fractal, the axis
+	 * values, the size of the image in pixels, the maximum number of iterations and (for the Julia set)
+	 * the complex constant. It never changes once created so it can safely be handed to other threads
+	 * while the user carries on changing the values in the GUI.
+	 * 
+	 * The axis values may also be given as PreciseBounds. They are only used once the view is zoomed in so far
+	 * that the distance between pixels is below DOUBLESAFESPACING, at which point the pixels are calculated by
+	 * perturbation from a high precision reference orbit instead of with plain doubles. Down to
+	 * DOUBLEDOUBLESAFESPACING the reference orbit is calculated in double-double, below that with BigDecimals.
+	 */
+
+	public FractalView(FractalType type, double realAxisStart, double realAxisEnd, double imagAxisStart, double imagAxisEnd,
+			int width, int height, int numberOfIterations, double juliaReal, double juliaImag){
+		this(type, realAxisStart, realAxisEnd, imagAxisStart, imagAxisEnd, width, height, numberOfIterations, juliaReal, juliaImag, null);
+	}
+
+	public FractalView(FractalType type, double realAxisStart, double realAxisEnd, double imagAxisStart, double imagAxisEnd,
+			int width, int height, int numberOfIterations, double juliaReal, double juliaImag, PreciseBounds precise){
+		this.type = type;
+		this.realAxisStart = realAxisStart;
+		this.realAxisEnd = realAxisEnd;
+		this.imagAxisStart = imagAxisStart;
+		this.imagAxisEnd = imagAxisEnd;
+		this.width = width;
+		this.height = height;
+		this.numberOfIterations = numberOfIterations;
+		this.juliaReal = juliaReal;
+		this.juliaImag = juliaImag;
+		this.precise = precise;
+
+		if (precise != null && isDeepZoom(precise, width, height)){
+			this.xScale = precise.getRealWidth().doubleValue() / width;
+			this.yScale = precise.imagAxisStart.subtract(precise.imagAxisEnd).doubleValue() / height;
+		} else {
+			this.xScale = (realAxisEnd - realAxisStart) / width;
+			this.yScale = (imagAxisStart - imagAxisEnd) / height;
+		}
+
+		this.whole = this;
+		this.firstRow = 0;
+
+		//On a deep zoom end - start cannot be worked out with doubles, so the pixel spacing comes from the precise bounds.
+	}
+
+	private FractalView(FractalView parent, int firstRow, int rows){
+		this.type = parent.type;
+		this.realAxisStart = parent.realAxisStart;
+		this.realAxisEnd = parent.realAxisEnd;
+		this.imagAxisStart = parent.translateYCord(firstRow + rows);
+		this.imagAxisEnd = parent.translateYCord(firstRow);
+		this.width = parent.width;
+		this.height = rows;
+		this.numberOfIterations = parent.numberOfIterations;
+		this.juliaReal = parent.juliaReal;
+		this.juliaImag = parent.juliaImag;
+		this.precise = (parent.precise == null) ? null : parent.precise.band(firstRow, rows, parent.width, parent.height);
+		this.xScale = parent.xScale;
+		this.yScale = parent.yScale;
+		this.whole = parent.whole;
+		this.firstRow = parent.firstRow + firstRow;
+
+		/*
+		 * The axis values of a band are only rounded versions of where its rows are. Its pixels are worked out from
+		 * the origin and pixel spacing of the whole view, so a band's pixels are exactly the pixels of the whole view
+		 * whatever the band height.
+		 */
+	}
+
+	public static FractalView mandelbrot(PreciseBounds precise, int width, int height, int numberOfIterations){
+		return new FractalView(FractalType.MANDELBROT, precise.realAxisStart.doubleValue(), precise.realAxisEnd.doubleValue(),
+				precise.imagAxisStart.doubleValue(), precise.imagAxisEnd.doubleValue(), width, height, numberOfIterations, 0.0, 0.0, precise);
+	}
+
+	public static FractalView mandelbrot(double realAxisStart, double realAxisEnd, double imagAxisStart, double imagAxisEnd,
+			int width, int height, int numberOfIterations){
+		return new FractalView(FractalType.MANDELBROT, realAxisStart, realAxisEnd, imagAxisStart, imagAxisEnd,
+				width, height, numberOfIterations, 0.0, 0.0);
+	}
+
+	public static FractalView julia(double realAxisStart, double realAxisEnd, double imagAxisStart, double imagAxisEnd,
+			int width, int height, int numberOfIterations, double juliaReal, double juliaImag){
+		return new FractalView(FractalType.JULIA, realAxisStart, realAxisEnd, imagAxisStart, imagAxisEnd,
+				width, height, numberOfIterations, juliaReal, juliaImag);
+	}
+
+	public double getXScale(){
+		return xScale;
+	}
+
+	public double getYScale(){
+		return yScale;
+	}
+
+	public FractalView getWhole(){
+		return whole;
+
+		//The view this is a band of, or this view itself if it is not a band.
+	}
+
+	public int getFirstRow(){
+		return firstRow;
+
+		//Which row of getWhole() the top row of this view is.
+	}
+
+	public double getPixelSpacing(){
+		return Math.min(Math.abs(xScale), Math.abs(yScale));
+	}
+
+	private static double preciseSpacing(PreciseBounds precise, int width, int height){
+		return Math.min(Math.abs(precise.getRealWidth().doubleValue()) / width,
+				Math.abs(precise.getImagHeight().doubleValue()) / height);
+	}
+
+	private static boolean isDeepZoom(PreciseBounds precise, int width, int height){
+		return preciseSpacing(precise, width, height) < DOUBLESAFESPACING;
+	}
+
+	public boolean isDeepZoom(){
+		return type == FractalType.MANDELBROT && whole.precise != null && isDeepZoom(whole.precise, whole.width, whole.height);
+
+		//True when the view is too far zoomed in for the double precision kernels to be accurate. A band goes by its whole view.
+	}
+
+	public boolean needsPerturbation(){
+		return isDeepZoom() && preciseSpacing(whole.precise, whole.width, whole.height) < DOUBLEDOUBLESAFESPACING;
+
+		//True when the view is too far zoomed in even for double-double arithmetic.
+	}
+
+	public boolean usesPerturbation(){
+		return needsPerturbation() || (isDeepZoom() && PERTURBATION);
+	}
+
+	public synchronized PerturbationReference getReference(){
+		if (reference == null){
+			reference = (whole == this) ? PerturbationReference.forView(precise, width, height, numberOfIterations) : whole.getReference();
+		}
+
+		return reference;
+
+		//The high precision reference orbit is only calculated once per view, the first time a deep zoom tile needs it.
+	}
+
+	public PixelCalculator createPixelCalculator(){
+		if (usesPerturbation() == true){
+			return new PerturbationCalculator(this, getReference());
+		} else if (isDeepZoom() == true){
+			return new DoubleDoubleCalculator(this);
+		} else {
+			return VectorKernel.create(this);
+		}
+
+		/*
+		 * Each render thread creates its own PixelCalculator. Perturbation is quicker than iterating every pixel in double-double.
+		 * Everything else uses the double kernels, several pixels at a time when the Vector API kernel is available.
+		 */
+	}
+
+	public double translateXCord(int xCord){
+		return (getXScale() * xCord) + realAxisStart;
+
+		//Same translation as the panels use, the real number that a certain x coordinate represents.
+	}
+
+	public double translateYCord(int yCord){
+		return (getYScale() * (firstRow + yCord)) + whole.imagAxisEnd;
+
+		//The imaginary number that a certain y coordinate represents. The y axis is flipped so the top row is imagAxisEnd.
+	}
+
+	public Calculator createCalculator(){
+		if (type == FractalType.JULIA){
+			return new Calculator(numberOfIterations, new Complex(juliaReal, juliaImag));
+		} else {
+			return new Calculator(numberOfIterations);
+		}
+	}
+
+	public int iterate(Calculator calculator, double xReal, double yImag){
+		if (type == FractalType.JULIA){
+			return calculator.iterateJulia(xReal, yImag);
+		} else {
+			return calculator.iterateMandelbrot(xReal, yImag);
+		}
+
+		//Runs the escape time calculation for the right fractal on a calculator made by createCalculator.
+	}
+
+	public FractalView coarse(int step){
+		int coarseWidth = (width + step - 1) / step;
+		int coarseHeight = (height + step - 1) / step;
+		double coarseRealAxisEnd = realAxisStart + ((getXScale() * step) * coarseWidth);
+		double coarseImagAxisStart = imagAxisEnd + ((getYScale() * step) * coarseHeight);
+
+		PreciseBounds coarsePrecise = (precise == null) ? null : precise.coarse(step, width, height);
+		FractalView coarseView = new FractalView(type, realAxisStart, coarseRealAxisEnd, coarseImagAxisStart, imagAxisEnd,
+				coarseWidth, coarseHeight, numberOfIterations, juliaReal, juliaImag, coarsePrecise);
+
+		if (coarseView.usesPerturbation() == true){
+			coarseView.reference = getReference(); //The preview passes share the reference orbit of the full view.
+		}
+
+		return coarseView;
+
+		/*
+		 * Returns a lower resolution version of this view where each pixel stands for a step x step block
+		 * of pixels. The axis end values are moved so that coarse pixel (x, y) samples the same complex number
+		 * as full pixel (x * step, y * step). Used to show a quick preview before the full image is ready.
+		 */
+	}
+
+	public FractalView band(int firstRow, int rows){
+		FractalView bandView = new FractalView(this, firstRow, rows);
+
+		if (bandView.usesPerturbation() == true){
+			bandView.reference = getReference(); //Every band shares the reference orbit of the whole view.
+		}
+
+		return bandView;
+
+		/*
+		 * Returns the horizontal strip of this view made up of the given number of rows, starting from firstRow
+		 * at the top. Used to render images too big to keep in memory a band at a time.
+		 */
+	}
+
+	public FractalView withIterations(int iterations){
+		FractalView view = new FractalView(type, realAxisStart, realAxisEnd, imagAxisStart, imagAxisEnd,
+				width, height, iterations, juliaReal, juliaImag, precise);
+
+		if (view.usesPerturbation() == true && usesPerturbation() == true && iterations <= numberOfIterations){
+			view.reference = getReference(); //A shorter orbit is just the start of the longer one.
+		}
+
+		return view;
+
+		//The same view with a different maximum number of iterations, used for quick previews.
+	}
+
+	public boolean equals(Object other){
+		if (!(other instanceof FractalView)){
+			return false;
+		}
+
+		FractalView view = (FractalView) other;
+		return type == view.type && width == view.width && height == view.height
+				&& numberOfIterations == view.numberOfIterations
+				&& Double.compare(realAxisStart, view.realAxisStart) == 0
+				&& Double.compare(realAxisEnd, view.realAxisEnd) == 0
+				&& Double.compare(imagAxisStart, view.imagAxisStart) == 0
+				&& Double.compare(imagAxisEnd, view.imagAxisEnd) == 0
+				&& Double.compare(juliaReal, view.juliaReal) == 0
+				&& Double.compare(juliaImag, view.juliaImag) == 0
+				&& java.util.Objects.equals(precise, view.precise)
+				&& firstRow == view.firstRow && (whole == this ? view.whole == view : whole.equals(view.whole));
+	}
+
+	public int hashCode(){
+		return java.util.Objects.hash(type, realAxisStart, realAxisEnd, imagAxisStart, imagAxisEnd,
+				width, height, numberOfIterations, juliaReal, juliaImag);
+	}
+}
@@ -0,0 +1,186 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class HeadlessRenderer {
+	public static final int DEFAULTBANDHEIGHT = 128;
+
+	private final RenderEngine engine;
+	private final int bandHeight;
+
+	/*
+	 * Renders an image of any size straight to a PNG file without a window. The image is split into horizontal
+	 * bands. Each band is rendered on every core by the RenderEngine and then handed to a PngStripWriter on a
+	 * separate thread, which compresses it while the next band is being rendered. At most two bands are held at
+	 * once, so the memory needed depends on the band height and the width of the image, never on its height.
+	 *
+	 * Usage:
+	 *   java -cp out HeadlessRenderer --size 16384x16384 --iterations 1000 --out wall.png
+	 *
+	 * Options:
+	 *   --type mandelbrot|julia    which fractal, mandelbrot by default
+	 *   --real START,END           real axis, -2.0,1.0 by default (-2.0,2.0 for julia)
+	 *   --imag START,END           imaginary axis, -1.2,1.2 by default (-1.6,1.6 for julia)
+	 *   --julia REAL,IMAG          the julia constant, -0.5,0.5 by default
+	 *   --size WIDTHxHEIGHT        size of the image in pixels, 1920x1080 by default
+	 *   --iterations N             maximum number of iterations, 100 by default
+	 *   --band ROWS                rows rendered at a time, 128 by default
+	 *   --out FILE                 the PNG file to write, fractal.png by default
+	 *
+	 * The axis values are read as exact decimals, so Mandelbrot views zoomed in past the limit of doubles
+	 * can be rendered as well.
+	 */
+
+	public HeadlessRenderer(RenderEngine engine, int bandHeight){
+		this.engine = engine;
+		this.bandHeight = Math.max(1, bandHeight);
+	}
+
+	public void render(FractalView view, OutputStream out) throws IOException {
+		PngStripWriter writer = new PngStripWriter(out, view.width, view.height);
+		ExecutorService encoder = Executors.newSingleThreadExecutor(new BackgroundRenderer.DaemonThreadFactory());
+		Future<Void> previousBand = null;
+
+		try {
+			for (int firstRow = 0; firstRow < view.height; firstRow += bandHeight){
+				int rows = Math.min(bandHeight, view.height - firstRow);
+				int[] pixels = new int[view.width * rows];
+				engine.render(view.band(firstRow, rows), pixels);
+
+				waitFor(previousBand);
+				previousBand = encoder.submit(new WriteBand(writer, pixels, rows));
+			}
+
+			waitFor(previousBand);
+			writer.finish();
+		} finally {
+			encoder.shutdownNow();
+		}
+
+		/*
+		 * The band being compressed is only waited for once the next band has been rendered, so rendering and
+		 * compressing overlap. The stream is not closed.
+		 */
+	}
+
+	private static void waitFor(Future<Void> band) throws IOException {
+		if (band == null){
+			return;
+		}
+
+		try {
+			band.get();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the image", e);
+		} catch (ExecutionException e){
+			throw new IOException("There was a problem writing the image", e.getCause());
+		}
+	}
+
+	class WriteBand implements Callable<Void> {
+		private final PngStripWriter writer;
+		private final int[] pixels;
+		private final int rows;
+
+		public WriteBand(PngStripWriter writer, int[] pixels, int rows){
+			this.writer = writer;
+			this.pixels = pixels;
+			this.rows = rows;
+		}
+
+		public Void call() throws IOException {
+			writer.writeRows(pixels, rows);
+			return null;
+		}
+	}
+
+	public static void main(String[] args){
+		String type = "mandelbrot";
+		String real = null;
+		String imag = null;
+		String julia = "-0.5,0.5";
+		String size = "1920x1080";
+		int iterations = 100;
+		int bandHeight = DEFAULTBANDHEIGHT;
+		String outFile = "fractal.png";
+
+		try {
+			for (int i = 0; i < args.length; i += 2){
+				String value = (i + 1 < args.length) ? args[i + 1] : "";
+
+				switch (args[i]){
+					case "--type": type = value.toLowerCase(); break;
+					case "--real": real = value; break;
+					case "--imag": imag = value; break;
+					case "--julia": julia = value; break;
+					case "--size": size = value.toLowerCase(); break;
+					case "--iterations": iterations = Integer.parseInt(value); break;
+					case "--band": bandHeight = Integer.parseInt(value); break;
+					case "--out": outFile = value; break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			boolean isJulia = type.equals("julia");
+			if (isJulia == false && type.equals("mandelbrot") == false){
+				throw new IllegalArgumentException("--type must be mandelbrot or julia");
+			}
+
+			BigDecimal[] realAxis = pair((real != null) ? real : (isJulia ? "-2.0,2.0" : "-2.0,1.0"));
+			BigDecimal[] imagAxis = pair((imag != null) ? imag : (isJulia ? "-1.6,1.6" : "-1.2,1.2"));
+			String[] dimensions = size.split("x");
+			int width = Integer.parseInt(dimensions[0].trim());
+			int height = Integer.parseInt(dimensions[1].trim());
+
+			if (width < 1 || height < 1 || iterations < 1){
+				throw new IllegalArgumentException("The size and number of iterations must be positive");
+			}
+
+			FractalView view;
+			if (isJulia == true){
+				BigDecimal[] constant = pair(julia);
+				view = FractalView.julia(realAxis[0].doubleValue(), realAxis[1].doubleValue(), imagAxis[0].doubleValue(), imagAxis[1].doubleValue(),
+						width, height, iterations, constant[0].doubleValue(), constant[1].doubleValue());
+			} else {
+				view = FractalView.mandelbrot(new PreciseBounds(realAxis[0], realAxis[1], imagAxis[0], imagAxis[1]), width, height, iterations);
+			}
+
+			RenderEngine engine = new RenderEngine();
+			long start = System.nanoTime();
+
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile), 1 << 16)){
+				new HeadlessRenderer(engine, bandHeight).render(view, out);
+			}
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("Wrote %s (%dx%d, %d iterations) in %.1fs on %d threads%n",
+					outFile, width, height, iterations, seconds, engine.getParallelism());
+			engine.shutdown();
+		} catch (IOException e){
+			System.err.println("There was a problem creating your file: " + e.getMessage());
+			System.exit(1);
+		} catch (RuntimeException e){
+			System.err.println(e.getMessage());
+			System.err.println("Usage: HeadlessRenderer [--type mandelbrot|julia] [--real START,END] [--imag START,END] [--julia REAL,IMAG]");
+			System.err.println("                        [--size WIDTHxHEIGHT] [--iterations N] [--band ROWS] [--out FILE]");
+			System.exit(2);
+		}
+	}
+
+	static BigDecimal[] pair(String value){
+		String[] parts = value.split(",");
+		if (parts.length != 2){
+			throw new IllegalArgumentException("Expected two numbers separated by a comma: " + value);
+		}
+
+		return new BigDecimal[] {new BigDecimal(parts[0].trim()), new BigDecimal(parts[1].trim())};
+	}
+}
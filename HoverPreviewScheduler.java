@@ -0,0 +1,197 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+public class HoverPreviewScheduler {
+	public static final int RESTDELAY = 150;
+	//How long in milliseconds the mouse must stay still before the full quality image is rendered.
+
+	public static final double PREVIEWBUDGET = 12.0;
+	//Target time in milliseconds for rendering one preview, leaving some of a 16ms frame for drawing it.
+
+	private static final int MINIMUMSTEP = 2;
+	private static final int MAXIMUMSTEP = 16;
+	private static final int PREVIEWITERATIONS = 64;
+	//Previews are rendered at between 1/2 and 1/16 resolution and to at most this many iterations.
+
+	private final RenderEngine engine;
+	private final BackgroundRenderer renderer;
+	private final BackgroundRenderer.ImageListener listener;
+	private final ExecutorService executor;
+	private final Timer restTimer;
+
+	private final AtomicReference<FractalView> pendingView = new AtomicReference<FractalView>();
+	private final AtomicBoolean previewQueued = new AtomicBoolean(false);
+
+	private FractalView hoveredView;
+	private volatile long rests = 0;
+	private volatile int previewStep = 4;
+	private volatile double lastPreviewMillis = 0.0;
+	private volatile long previewsRendered = 0;
+	private volatile long previewsDropped = 0;
+
+	/*
+	 * Schedules the live Julia set preview while the mouse moves over the Mandelbrot set. Mouse events can
+	 * arrive far faster than even a small image can be rendered, so only the newest constant is ever kept:
+	 * each hover replaces the pending view, and whatever was pending before is dropped without being rendered.
+	 * A single preview thread renders the newest pending view at low resolution and with few iterations, so
+	 * the time from the mouse moving to the new image being shown stays within about one frame.
+	 *
+	 * The resolution of the preview adjusts itself: if a preview takes longer than PREVIEWBUDGET the next one
+	 * is rendered at half the resolution, and if it is much quicker the resolution is doubled again. Once the
+	 * mouse has been still for RESTDELAY the view is handed to the BackgroundRenderer, which refines it to the
+	 * full quality image.
+	 */
+
+	public HoverPreviewScheduler(RenderEngine engine, BackgroundRenderer renderer, BackgroundRenderer.ImageListener listener){
+		this.engine = engine;
+		this.renderer = renderer;
+		this.listener = listener;
+		this.executor = Executors.newSingleThreadExecutor(new BackgroundRenderer.DaemonThreadFactory());
+		this.restTimer = new Timer(RESTDELAY, new RestListener());
+		this.restTimer.setRepeats(false);
+	}
+
+	public void hover(FractalView view){
+		hoveredView = view;
+		renderer.cancel(); //The full quality render of an older constant is no longer wanted.
+
+		if (pendingView.getAndSet(view) != null){
+			previewsDropped ++; //Replaced before it was started, so it is never rendered.
+		}
+
+		if (previewQueued.compareAndSet(false, true)){
+			executor.execute(new RenderPreview());
+		}
+
+		restTimer.restart();
+
+		//Called on the Event Dispatch Thread for every mouse movement.
+	}
+
+	public void requestRender(FractalView view, String source){
+		if (restTimer.isRunning() == true && view.equals(hoveredView)){
+			return; //Still hovering, the full image is rendered once the mouse rests.
+		}
+
+		renderer.requestRender(view, source);
+
+		//Used in place of BackgroundRenderer.requestRender when painting, so a repaint during hovering does not start a full render.
+	}
+
+	public boolean isHovering(){
+		return restTimer.isRunning();
+	}
+
+	public int getPreviewStep(){
+		return previewStep;
+	}
+
+	public double getLastPreviewMillis(){
+		return lastPreviewMillis;
+	}
+
+	public long getPreviewsRendered(){
+		return previewsRendered;
+	}
+
+	public long getPreviewsDropped(){
+		return previewsDropped;
+	}
+
+	static FractalView previewView(FractalView view, int step){
+		FractalView preview = view.coarse(step);
+		return preview.withIterations(Math.min(view.numberOfIterations, PREVIEWITERATIONS));
+	}
+
+	class RenderPreview implements Runnable {
+
+		public void run(){
+			previewQueued.set(false);
+			FractalView view = pendingView.getAndSet(null);
+
+			if (view == null){
+				return;
+			}
+
+			long previewRests = rests;
+			int step = previewStep;
+			long start = System.nanoTime();
+			RenderEvents.Request event = new RenderEvents.Request();
+			event.begin();
+
+			IterationMap map = new IterationMap(previewView(view, step));
+			engine.render(map, (int[]) null, new AtomicBoolean(false), new RenderStatistics());
+			BufferedImage image = map.toImage(Palette.forView(view));
+
+			event.end();
+			if (event.shouldCommit()){
+				event.setView(map.view);
+				event.source = "Julia hover preview";
+				event.commit();
+			}
+
+			lastPreviewMillis = (System.nanoTime() - start) / 1e6;
+			previewsRendered ++;
+
+			if (lastPreviewMillis > PREVIEWBUDGET && step < MAXIMUMSTEP){
+				previewStep = step * 2;
+			} else if (lastPreviewMillis < PREVIEWBUDGET / 5 && step > MINIMUMSTEP){
+				previewStep = step / 2;
+			}
+
+			SwingUtilities.invokeLater(new PublishPreview(view, image, step, previewRests));
+
+			/*
+			 * The preview is colored with the palette of the full view, so its colors match the refined image even
+			 * though it was iterated fewer times. Halving the step quarters the number of pixels, so the resolution
+			 * is only raised again when a preview took less than a fifth of the budget.
+			 */
+		}
+	}
+
+	class PublishPreview implements Runnable {
+		private final FractalView view;
+		private final BufferedImage image;
+		private final int step;
+		private final long previewRests;
+
+		public PublishPreview(FractalView view, BufferedImage image, int step, long previewRests){
+			this.view = view;
+			this.image = image;
+			this.step = step;
+			this.previewRests = previewRests;
+		}
+
+		public void run(){
+			if (previewRests == rests){
+				listener.imageReady(view, image, step, false);
+			}
+
+			/*
+			 * A preview is still shown if the mouse has moved on since, as it is closer than the image on screen and
+			 * the next preview is already on its way. It is not shown once the mouse has rested, so it can never
+			 * replace the full quality image.
+			 */
+		}
+	}
+
+	class RestListener implements ActionListener {
+
+		public void actionPerformed(ActionEvent e){
+			rests ++;
+
+			if (hoveredView != null){
+				renderer.requestRender(hoveredView, "Julia hover");
+			}
+
+			//The mouse has stopped moving, so the last hovered view is refined to full quality.
+		}
+	}
+}
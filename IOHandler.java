@@ -1,10 +1,14 @@
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import javax.imageio.ImageIO;
 
 public class IOHandler {
-	BufferedReader reader;
+	public static final String FAVOURITESLOG = "savedFavourites.log";
+	public static final String FAVOURITESTEXT = "savedFavourites.txt";
+
+	FavouritesLog favourites;
 	public ArrayList<Complex> juliaFavs; //ArrayList used to stored all saved julia complex numbers
 
 
@@ -13,93 +17,75 @@ public class IOHandler {
 		juliaFavs = new ArrayList<Complex>();
 
 
-		try {
-			reader  = new BufferedReader(new FileReader("savedFavourites.txt")); //reads from filed savedFavourites.txt
-			this.readFavouritesStartUp();
-		}  catch (FileNotFoundException e) {
-			System.err.println("The file could not be found"); //Exception caught if there is a problem reading from file.
-		}
-	}
+		RenderEvents.FileIO event = new RenderEvents.FileIO();
+		event.begin();
 
-	public boolean isReady(){
-		boolean isItReady = false;
 		try {
-			isItReady = reader.ready();
-		} catch (IOException e) {
-			System.out.println("There was a problem reading from the favourites file.");
-		}
-
-		return isItReady;
+			favourites = FavouritesLog.open(Paths.get(FAVOURITESLOG), Paths.get(FAVOURITESTEXT));
+			juliaFavs.addAll(favourites.getFavourites());
 
-		/*
-		 * This is used to check that the file is ready to read from. If it is the variable isItReady returns true
-		 */
-	}
-
-	public String getLine(){
-		String s = null;
-		try {
-			s = reader.readLine();
+			if (favourites.isReadOnly() == true){
+				System.err.println("The favourites file is open in another viewer, so favourites cannot be saved from this one");
+			}
 		} catch (IOException e) {
-			System.err.println("There was a problem reading from the favourites file. ");
+			System.err.println("There was a problem reading from the favourites file: " + e.getMessage());
+			event.failed = true;
 		}
 
-		return s;
+		commitFileEvent(event, "Read favourites", new File(FAVOURITESLOG));
 
 		/*
-		 * This method is used the read each line from the specified BufferedReader input file. 
-		 * If there are any problems the the exception is caught and a helpful error message is displayed
+		 * The favourites are read from savedFavourites.log (see FavouritesLog). The first time the viewer is run
+		 * after the change, the favourites in the old savedFavourites.txt are moved into the log. If the log
+		 * cannot be read the viewer still starts, with no favourites, and new favourites are not saved. Nor are they
+		 * if another viewer already has the log open.
 		 */
-
 	}
 
-	public void readFavouritesStartUp(){
-		while(this.isReady()==true) {
-			try {
-				String[] favouritedImages = this.getLine().split(":");
-				juliaFavs.add(new Complex(Double.parseDouble(favouritedImages[0]),Double.parseDouble(favouritedImages[1])));
-
-			} catch (NumberFormatException e){
-			}
-		}	
+	private void commitFileEvent(RenderEvents.FileIO event, String operation, File file){
+		event.end();
 
-		/*
-		 * Each line of the file is read and split on the : symbol. This allows both the real and imaginary parts of a complex
-		 * number to be stored in the text file. Each complex number stored in the text file is then added to the arraylist
-		 * juliaFavs and stored as a Complex object. 
-		 */
+		if (event.shouldCommit()){
+			event.operation = operation;
+			event.path = file.getAbsolutePath();
+			event.bytes = file.length();
+			event.commit();
+		}
 
+		//Records a File IO flight recorder event, if a recording is running, with the size of the file afterwards.
 	}
 
-	public void writeFavouritesClose(){
-		BufferedWriter writer = null;
+	public boolean addFavourite(Complex juliaNumber){
+		Complex favourite = new Complex(juliaNumber.getRealNum(), juliaNumber.getImagNum());
+		RenderEvents.FileIO event = new RenderEvents.FileIO();
+		event.begin();
 
-		//This method is ued to save newly added Julia favorite images to the file savedFavourites.txt.
+		boolean added = false;
 
-		try {
-			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("savedFavourites.txt"), "utf-8"));
-			for(Complex element : juliaFavs){
-				writer.write(Double.toString(element.getRealNum()) + ":" + Double.toString(element.getImagNum()));
-				writer.newLine();
+		if (favourites == null){
+			System.err.println("The favourites file could not be opened, so favourites cannot be saved");
+			event.failed = true;
+		} else {
+			try {
+				added = favourites.append(favourite);
+			} catch (IOException ex) {
+				System.err.println("There was a problem writing to the file to save the favourites: " + ex.getMessage());
+				event.failed = true;
 			}
+		}
 
-			/*
-			 * Every Complex number in the array list is written to the text file with the real number part
-			 * and imaginary number part split by a semi colon. 
-			 */
-		} catch (IOException ex) {
-			System.err.println("There was a problem writing to the file to save the favourites!");
-		} finally {
-			try {writer.close();} catch (Exception ex) {}
+		if (added == true){
+			juliaFavs.add(favourite);
 		}
-	}
 
-	public void addFavourite(Complex juliaNumber){
-		juliaFavs.add(new Complex(juliaNumber.getRealNum(), juliaNumber.getImagNum()));
-		this.fillComboBox();
+		commitFileEvent(event, "Append favourite", new File(FAVOURITESLOG));
+		return added;
 
 		/*
-		 * Complex number currently being displayed is added to the arraylist juliaFavs.
+		 * Complex number currently being displayed is added to the arraylist juliaFavs and appended to the end
+		 * of the favourites log, which is forced to disk straight away. Nothing else in the file is rewritten.
+		 * Returns false, and adds nothing, if the number is already a favourite or could not be saved, so the
+		 * combo box never shows a favourite that would be gone after a restart.
 		 */
 	}
 
@@ -121,15 +107,19 @@ public class IOHandler {
 	}
 
 	public void saveImage(Complex juliaNumber, BufferedImage juliaCanvas){
+		RenderEvents.FileIO event = new RenderEvents.FileIO();
+		event.begin();
+		File outputfile = new File(juliaNumber.toString() + ".png");
 
 		try {
-			File outputfile = new File(juliaNumber.toString() + ".png");
 			ImageIO.write(juliaCanvas, "png", outputfile);
 		} catch (IOException e) {
 			System.err.println("There was a problem creating your file");
-
+			event.failed = true;
 		}
 
+		commitFileEvent(event, "Save image", outputfile);
+
 		/*
 		 * This method exports an image that is being viewed in the Julia panel to a png file
 		 * in the default directory. The name of the file is the string representation of the complex
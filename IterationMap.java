@@ -0,0 +1,196 @@
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class IterationMap {
+	public final FractalView view;
+
+	private final int[] counts;
+	private final float[] fractions;
+
+	/*
+	 * An IterationMap keeps the result of iterating every pixel of one view: the escape count, and the
+	 * fractional part of the smooth iteration value for pixels that escaped. Turning these into colors is
+	 * cheap compared with iterating, so once a view has been rendered it can be recolored, saved or redrawn
+	 * from the map without running the calculator again. The map belongs to a single view, which fixes the
+	 * axis values, the size of the image and the number of iterations.
+	 *
+	 * The smooth value is stored as count + fraction. The fraction is always small, so storing it as a float
+	 * keeps the map to 8 bytes a pixel while losing far less precision than the color wheel can show.
+	 */
+
+	public IterationMap(FractalView view){
+		this.view = view;
+		this.counts = new int[view.width * view.height];
+		this.fractions = new float[view.width * view.height];
+	}
+
+	public boolean matches(FractalView view){
+		return this.view.equals(view);
+
+		//True if the map holds the iteration data for exactly this view.
+	}
+
+	public void setEscaped(int x, int y, int count, double modulusSquared){
+		setSmooth(x, y, count, Palette.smoothValue(count, modulusSquared));
+	}
+
+	public void setSmooth(int x, int y, int count, double smooth){
+		int i = y * view.width + x;
+		counts[i] = count;
+		fractions[i] = (float) (smooth - count);
+	}
+
+	public void setInside(int x, int y){
+		int i = y * view.width + x;
+		counts[i] = view.numberOfIterations;
+		fractions[i] = 0.0f;
+
+		//Pixels that never escape have no smooth value and are always coloured black.
+	}
+
+	public void copyPixel(int from, int to){
+		counts[to] = counts[from];
+		fractions[to] = fractions[from];
+
+		//Copies one pixel's data to another, both given as indexes into the arrays.
+	}
+
+	public void copyPixel(IterationMap from, int fromX, int fromY, int x, int y){
+		int i = y * view.width + x;
+		int fromI = fromY * from.view.width + fromX;
+		counts[i] = from.counts[fromI];
+		fractions[i] = from.fractions[fromI];
+
+		//Copies a pixel from another map, used when a new view shares some points with one already rendered.
+	}
+
+	public void copyRegion(IterationMap from, int fromX, int fromY, int x, int y, int width, int height){
+		for (int row = 0; row < height; row++){
+			int i = (y + row) * view.width + x;
+			int fromI = (fromY + row) * from.view.width + fromX;
+			System.arraycopy(from.counts, fromI, counts, i, width);
+			System.arraycopy(from.fractions, fromI, fractions, i, width);
+		}
+
+		//Copies a rectangle of pixels from another map a row at a time, used to build a view out of cached tiles.
+	}
+
+	public int getCount(int x, int y){
+		return counts[y * view.width + x];
+	}
+
+	public double getSmoothValue(int x, int y){
+		int i = y * view.width + x;
+		return counts[i] + (double) fractions[i];
+	}
+
+	public boolean isInside(int x, int y){
+		return counts[y * view.width + x] == view.numberOfIterations;
+	}
+
+	public int[] getCounts(){
+		return counts;
+	}
+
+	public float[] getFractions(){
+		return fractions;
+
+		//The raw arrays, one entry per pixel in rows from the top left. They are not copied, so they must not be changed.
+	}
+
+	public void colour(Palette palette, int[] pixels){
+		colour(palette, pixels, 0, 0, view.width, view.height);
+	}
+
+	public void colour(Palette palette, int[] pixels, int xFrom, int yFrom, int xTo, int yTo){
+		RenderEvents.ColourPass event = new RenderEvents.ColourPass();
+		event.begin();
+
+		for (int y = yFrom; y < yTo; y++){
+			int row = y * view.width;
+
+			for (int x = xFrom; x < xTo; x++){
+				int i = row + x;
+
+				if (counts[i] == view.numberOfIterations){
+					pixels[i] = palette.colourInside();
+				} else {
+					pixels[i] = palette.colourSmooth(counts[i] + (double) fractions[i]);
+				}
+			}
+		}
+
+		event.end();
+		if (event.shouldCommit()){
+			event.setView(view);
+			event.pixels = (long) (xTo - xFrom) * (yTo - yFrom);
+			event.commit();
+		}
+
+		/*
+		 * The color pass on its own. The palette is normally for the same number of iterations as the view, but a
+		 * preview iterated to fewer iterations can be colored with the full palette so its colors match.
+		 */
+	}
+
+	public BufferedImage toImage(Palette palette){
+		BufferedImage image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_ARGB);
+		colour(palette, RenderEngine.rasterPixels(view, image));
+		return image;
+	}
+
+	public IterationMap pan(FractalView newView, int xPixels, int yPixels){
+		IterationMap map = new IterationMap(newView);
+		int width = view.width;
+		int xStart = Math.max(0, -xPixels);
+		int xEnd = Math.min(width, width - xPixels);
+
+		for (int y = Math.max(0, -yPixels); y < Math.min(view.height, view.height - yPixels); y++){
+			int from = (y + yPixels) * width + xStart + xPixels;
+			System.arraycopy(counts, from, map.counts, y * width + xStart, xEnd - xStart);
+			System.arraycopy(fractions, from, map.fractions, y * width + xStart, xEnd - xStart);
+		}
+
+		return map;
+
+		/*
+		 * Makes a map for a view that has been moved by a whole number of pixels, copying every pixel that is on
+		 * screen in both views. Pixel (x, y) of the new map is pixel (x + xPixels, y + yPixels) of this one. The
+		 * uncovered strips are left empty for the caller to render.
+		 */
+	}
+
+	public void writeTo(ByteBuffer buffer){
+		buffer.asIntBuffer().put(counts);
+		buffer.position(buffer.position() + counts.length * 4);
+		buffer.asFloatBuffer().put(fractions);
+		buffer.position(buffer.position() + fractions.length * 4);
+	}
+
+	public void readFrom(ByteBuffer buffer){
+		buffer.asIntBuffer().get(counts);
+		buffer.position(buffer.position() + counts.length * 4);
+		buffer.asFloatBuffer().get(fractions);
+		buffer.position(buffer.position() + fractions.length * 4);
+
+		//Every count followed by every fraction, 8 bytes a pixel, used by TileStore to keep tiles on disk.
+	}
+
+	public void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(view.width);
+		out.writeInt(view.height);
+		out.writeInt(view.numberOfIterations);
+
+		for (int i = 0; i < counts.length; i++){
+			out.writeInt(counts[i]);
+			out.writeFloat(fractions[i]);
+		}
+
+		/*
+		 * Exports the raw data as the width, height and number of iterations followed by the count and
+		 * fraction of every pixel, so the image can be recolored or analysed by another program.
+		 */
+	}
+}
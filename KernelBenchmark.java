@@ -0,0 +1,66 @@
+public class KernelBenchmark {
+	private static final int ROUNDS = 5;
+
+	/*
+	 * Compares the scalar double kernel against the Vector API kernel on a single thread, so the result is the
+	 * speedup per core. Every view is calculated with both kernels and the escape counts and |z|^2 values are
+	 * checked to be identical before any timings are printed. Run with the vector kernel compiled in, see VectorKernel:
+	 *   java --add-modules jdk.incubator.vector -cp out KernelBenchmark
+	 */
+
+	public static void main(String[] args){
+		System.out.println("Vector kernel available: " + VectorKernel.isAvailable() + ", lanes: " + VectorKernel.getLaneCount());
+
+		FractalView[] views = {
+				FractalView.mandelbrot(-2.0, 1.0, -1.2, 1.2, 600, 500, 500),
+				FractalView.mandelbrot(-0.7454, -0.7452, 0.1129, 0.1131, 600, 500, 2000),
+				FractalView.julia(-2.0, 2.0, -1.6, 1.6, 600, 500, 500, -0.8, 0.156),
+				FractalView.julia(-2.0, 2.0, -1.6, 1.6, 600, 500, 500, -0.5, 0.5)
+		};
+
+		for (FractalView view : views){
+			int[] scalarCounts = new int[view.width * view.height];
+			int[] vectorCounts = new int[view.width * view.height];
+			double[] scalarModuli = new double[view.width * view.height];
+			double[] vectorModuli = new double[view.width * view.height];
+
+			double scalarMillis = Double.MAX_VALUE;
+			double vectorMillis = Double.MAX_VALUE;
+
+			for (int round = 0; round < ROUNDS; round++){
+				scalarMillis = Math.min(scalarMillis, time(new DoublePixelCalculator(view), view, scalarCounts, scalarModuli));
+				vectorMillis = Math.min(vectorMillis, time(VectorKernel.create(view), view, vectorCounts, vectorModuli));
+			}
+
+			int mismatches = 0;
+			for (int i = 0; i < scalarCounts.length; i++){
+				boolean escaped = scalarCounts[i] != view.numberOfIterations;
+
+				if (scalarCounts[i] != vectorCounts[i] || (escaped && scalarModuli[i] != vectorModuli[i])){
+					mismatches ++;
+				}
+			}
+
+			double pixels = view.width * view.height;
+			System.out.printf("%s %dx%d N=%d: scalar %.1f Mpixel/s, vector %.1f Mpixel/s, speedup %.2fx, mismatches %d%n",
+					view.type, view.width, view.height, view.numberOfIterations,
+					pixels / scalarMillis / 1000.0, pixels / vectorMillis / 1000.0, scalarMillis / vectorMillis, mismatches);
+		}
+
+		//The best of several rounds is used so the first rounds, before the JIT has compiled the kernels, are not counted.
+	}
+
+	private static double time(PixelCalculator calculator, FractalView view, int[] counts, double[] moduliSquared){
+		int[] rowCounts = new int[view.width];
+		double[] rowModuli = new double[view.width];
+		long start = System.nanoTime();
+
+		for (int y = 0; y < view.height; y++){
+			calculator.calculateRow(y, 0, view.width, rowCounts, rowModuli);
+			System.arraycopy(rowCounts, 0, counts, y * view.width, view.width);
+			System.arraycopy(rowModuli, 0, moduliSquared, y * view.width, view.width);
+		}
+
+		return (System.nanoTime() - start) / 1e6;
+	}
+}
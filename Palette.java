@@ -0,0 +1,120 @@
+import java.awt.Color;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Palette {
+	private static final int WHEELSIZE = 6 * 1024;
+	private static final int[] HUEWHEEL = createHueWheel();
+	//Colors all the way round the hue wheel at the saturation and brightness the viewer has always used.
+
+	private static final ConcurrentHashMap<Long, Palette> PALETTES = new ConcurrentHashMap<Long, Palette>();
+
+	private static final int BLACK = Color.black.getRGB();
+	private static final double LOG2 = Math.log(2.0);
+
+	private final FractalType type;
+	private final int numberOfIterations;
+	private final double wheelOffset;
+	private final double wheelPerSmooth;
+
+	/*
+	 * A Palette turns an escape count and final |z|^2 into a color using the same smooth coloring algorithm
+	 * as before, but without calling Color.HSBtoRGB for every pixel. The hue wheel is worked out once and a
+	 * Palette is made once for each fractal type and number of iterations, after which a color is found by
+	 * linearly interpolating between the two nearest entries of the wheel. The wheel size is a multiple of 6
+	 * so the corners of the HSB hue sextants fall exactly on entries, which keeps the colors within a
+	 * rounding error of HSBtoRGB.
+	 */
+
+	private Palette(FractalType type, int numberOfIterations){
+		this.type = type;
+		this.numberOfIterations = numberOfIterations;
+		this.wheelOffset = type.getHueOffset() * WHEELSIZE;
+		this.wheelPerSmooth = (1.9 / numberOfIterations) * WHEELSIZE;
+	}
+
+	public static Palette forView(FractalView view){
+		return forScheme(view.type, view.numberOfIterations);
+	}
+
+	public static Palette forScheme(FractalType type, int numberOfIterations){
+		Long key = ((long) numberOfIterations << 8) | type.ordinal();
+		Palette palette = PALETTES.get(key);
+
+		if (palette == null){
+			palette = new Palette(type, numberOfIterations);
+			PALETTES.putIfAbsent(key, palette);
+		}
+
+		return palette;
+
+		//Palettes are cached so changing back to a number of iterations that has been used before costs nothing.
+	}
+
+	private static int[] createHueWheel(){
+		int[] wheel = new int[WHEELSIZE + 1];
+
+		for (int i = 0; i <= WHEELSIZE; i++){
+			wheel[i] = Color.HSBtoRGB((float) i / WHEELSIZE, 0.9f, 0.9f);
+		}
+
+		return wheel;
+
+		//The extra entry at the end is the same color as the first and saves a wrap around check when interpolating.
+	}
+
+	public FractalType getType(){
+		return type;
+	}
+
+	public int getNumberOfIterations(){
+		return numberOfIterations;
+	}
+
+	public int colour(int iterTaken, double modulusSquared){
+		if (iterTaken == numberOfIterations){
+			return BLACK; //Complex numbers that do not escape are coloured black
+		}
+
+		return colourSmooth(smoothValue(iterTaken, modulusSquared));
+	}
+
+	public int colourInside(){
+		return BLACK;
+
+		//Color of points that never escape, whatever the number of iterations the point was checked to.
+	}
+
+	public static double smoothValue(int iterTaken, double modulusSquared){
+		return iterTaken + 1 - Math.log((0.5 * Math.log(modulusSquared)) / LOG2);
+
+		//The smooth (fractional) iteration count of an escaped point. log|z| is worked out as half of log|z|^2 so no square root is needed.
+	}
+
+	public int colourSmooth(double smooth){
+		double position = wheelOffset + (wheelPerSmooth * smooth);
+		position = position - (Math.floor(position / WHEELSIZE) * WHEELSIZE);
+
+		int index = (int) position;
+		if (index >= WHEELSIZE){
+			index = WHEELSIZE - 1; //Guards against rounding right at the end of the wheel.
+		}
+
+		return interpolate(HUEWHEEL[index], HUEWHEEL[index + 1], position - index);
+
+		//Colors an escaped pixel from its smooth iteration value. The hue wraps round the wheel like HSBtoRGB does.
+	}
+
+	private static int interpolate(int from, int to, double fraction){
+		int red = (from >> 16) & 0xff;
+		int green = (from >> 8) & 0xff;
+		int blue = from & 0xff;
+
+		red = red + (int) Math.round((((to >> 16) & 0xff) - red) * fraction);
+		green = green + (int) Math.round((((to >> 8) & 0xff) - green) * fraction);
+		blue = blue + (int) Math.round(((to & 0xff) - blue) * fraction);
+
+		return 0xff000000 | (red << 16) | (green << 8) | blue;
+
+		//Math.round also rounds a falling channel to the nearest value. Adding 0.5 and casting cuts a negative step towards zero instead, one too small.
+	}
+}
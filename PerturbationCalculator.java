@@ -0,0 +1,160 @@
+public class PerturbationCalculator implements PixelCalculator {
+	private static final double ESCAPELIMIT = 4.0;
+
+	private final PerturbationReference reference;
+	private final int numberOfIterations;
+	private final double xScale;
+	private final double yScale;
+	private final double xOffset;
+	private final double yOffset;
+	private final int firstRow;
+
+	private int seriesSkip = -1;
+	private double lastModulusSquared;
+	private long rebases = 0;
+	private long skippedIterations = 0;
+
+	/*
+	 * Calculates the pixels of a deep zoom as small differences (dc, dz) from a PerturbationReference, using only
+	 * doubles. xOffset and yOffset are the distance from the reference point to the top left pixel, worked out with
+	 * BigDecimals and then rounded, so the pixel positions keep their full precision however far in the view is.
+	 * 
+	 * When the pixel's orbit z gets smaller than its difference dz from the reference, or the reference orbit runs
+	 * out because the reference escaped, the pixel is rebased: dz is set to z and it carries on from the start of
+	 * the reference orbit. This stops the loss of precision that otherwise shows up as glitches (flat blobs of one
+	 * color) in perturbation renders.
+	 */
+
+	public PerturbationCalculator(FractalView view, PerturbationReference reference){
+		this.reference = reference;
+		this.numberOfIterations = view.numberOfIterations;
+		this.xScale = view.getXScale();
+		this.yScale = view.getYScale();
+		this.xOffset = view.precise.realAxisStart.subtract(reference.referenceReal).doubleValue();
+		this.yOffset = view.getWhole().precise.imagAxisEnd.subtract(reference.referenceImag).doubleValue();
+		this.firstRow = view.getFirstRow();
+
+		//A band is worked out from the top of its whole view, so its pixels are the ones the whole view would have.
+	}
+
+	public void prepareTile(int xFrom, int yFrom, int xTo, int yTo){
+		double maxDeltaSquared = 0.0;
+		int[] xCorners = {xFrom, xTo - 1};
+		int[] yCorners = {yFrom, yTo - 1};
+
+		for (int x : xCorners){
+			for (int y : yCorners){
+				double dcReal = xOffset + (xScale * x);
+				double dcImag = yOffset + (yScale * (firstRow + y));
+				maxDeltaSquared = Math.max(maxDeltaSquared, (dcReal * dcReal) + (dcImag * dcImag));
+			}
+		}
+
+		seriesSkip = reference.seriesSkip(maxDeltaSquared, Math.min(Math.abs(xScale), Math.abs(yScale)));
+
+		//The number of iterations the series approximation can skip is worked out for the corners of each tile.
+	}
+
+	public int calculatePixel(int xCord, int yCord){
+		return iterate(xOffset + (xScale * xCord), yOffset + (yScale * (firstRow + yCord)));
+	}
+
+	public int iterate(double dcReal, double dcImag){
+		double[] orbitReal = reference.orbitReal;
+		double[] orbitImag = reference.orbitImag;
+		int orbitEnd = reference.orbitLength - 1;
+
+		int count = 0;
+		int refIndex = 0;
+		double dzReal = 0.0;
+		double dzImag = 0.0;
+
+		if (seriesSkip > 0){
+			count = seriesSkip;
+			refIndex = seriesSkip;
+			dzReal = seriesValueReal(seriesSkip, dcReal, dcImag);
+			dzImag = seriesValueImag(seriesSkip, dcReal, dcImag);
+			skippedIterations += seriesSkip;
+		}
+
+		double zReal;
+		double zImag;
+		double modulusSquared;
+
+		while (true){
+			zReal = orbitReal[refIndex] + dzReal;
+			zImag = orbitImag[refIndex] + dzImag;
+			modulusSquared = (zReal * zReal) + (zImag * zImag);
+
+			if (count >= numberOfIterations || modulusSquared > ESCAPELIMIT){
+				break;
+			}
+
+			if (modulusSquared < ((dzReal * dzReal) + (dzImag * dzImag)) || refIndex == orbitEnd){
+				dzReal = zReal;
+				dzImag = zImag;
+				refIndex = 0;
+				rebases ++;
+			}
+
+			double refReal = orbitReal[refIndex];
+			double refImag = orbitImag[refIndex];
+			double newReal = 2 * ((refReal * dzReal) - (refImag * dzImag)) + ((dzReal * dzReal) - (dzImag * dzImag)) + dcReal;
+			double newImag = 2 * ((refReal * dzImag) + (refImag * dzReal)) + (2 * dzReal * dzImag) + dcImag;
+			dzReal = newReal;
+			dzImag = newImag;
+
+			refIndex ++;
+			count ++;
+		}
+
+		lastModulusSquared = modulusSquared;
+		return count;
+
+		//Counts iterations the same way as Calculator.iterateMandelbrot so the escape counts and coloring match.
+	}
+
+	private double seriesValueReal(int n, double dcReal, double dcImag){
+		double dc2Real = (dcReal * dcReal) - (dcImag * dcImag);
+		double dc2Imag = 2 * dcReal * dcImag;
+		double dc3Real = (dc2Real * dcReal) - (dc2Imag * dcImag);
+		double dc3Imag = (dc2Real * dcImag) + (dc2Imag * dcReal);
+
+		return (reference.seriesAReal[n] * dcReal - reference.seriesAImag[n] * dcImag)
+				+ (reference.seriesBReal[n] * dc2Real - reference.seriesBImag[n] * dc2Imag)
+				+ (reference.seriesCReal[n] * dc3Real - reference.seriesCImag[n] * dc3Imag);
+	}
+
+	private double seriesValueImag(int n, double dcReal, double dcImag){
+		double dc2Real = (dcReal * dcReal) - (dcImag * dcImag);
+		double dc2Imag = 2 * dcReal * dcImag;
+		double dc3Real = (dc2Real * dcReal) - (dc2Imag * dcImag);
+		double dc3Imag = (dc2Real * dcImag) + (dc2Imag * dcReal);
+
+		return (reference.seriesAReal[n] * dcImag + reference.seriesAImag[n] * dcReal)
+				+ (reference.seriesBReal[n] * dc2Imag + reference.seriesBImag[n] * dc2Real)
+				+ (reference.seriesCReal[n] * dc3Imag + reference.seriesCImag[n] * dc3Real);
+	}
+
+	public double getLastModulusSquared(){
+		return lastModulusSquared;
+	}
+
+	public long getSettledByBulbTest(){
+		return 0;
+	}
+
+	public long getSettledByCycle(){
+		return 0;
+	}
+
+	public long getRebases(){
+		return rebases;
+	}
+
+	public long getSkippedIterations(){
+		return skippedIterations;
+
+		//Iterations that were not run because the series approximation was used instead.
+	}
+}
@@ -0,0 +1,166 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+public class PerturbationReference {
+	private static final BigDecimal ESCAPELIMIT = BigDecimal.valueOf(4);
+	private static final double SERIESTOLERANCE = 1e-3;
+
+	public final BigDecimal referenceReal;
+	public final BigDecimal referenceImag;
+	public final int numberOfIterations;
+
+	final double[] orbitReal;
+	final double[] orbitImag;
+	final int orbitLength;
+	//The reference orbit Z0 = 0, Zn+1 = Zn^2 + C rounded to doubles once it has been calculated precisely.
+
+	final double[] seriesAReal;
+	final double[] seriesAImag;
+	final double[] seriesBReal;
+	final double[] seriesBImag;
+	final double[] seriesCReal;
+	final double[] seriesCImag;
+	final int seriesLength;
+	//Coefficients of the series approximation dzn = An dc + Bn dc^2 + Cn dc^3 for each step of the orbit.
+
+	/*
+	 * One point of the view (the reference) is iterated with BigDecimals at whatever precision the zoom needs.
+	 * Every other pixel is then iterated as a small difference from the reference orbit using plain doubles,
+	 * because for a pixel c = C + dc with z = Z + dz:
+	 * 
+	 *     dzn+1 = 2 Zn dzn + dzn^2 + dc
+	 * 
+	 * dc and dz are tiny but doubles can hold tiny numbers to full precision, it is only sums like C + dc
+	 * that lose digits. The series coefficients let the first few hundred iterations, where every pixel in the
+	 * view follows the reference closely, be skipped altogether.
+	 */
+
+	public PerturbationReference(BigDecimal referenceReal, BigDecimal referenceImag, int numberOfIterations, MathContext mc){
+		this(referenceReal, referenceImag, numberOfIterations, mc, false);
+	}
+
+	public PerturbationReference(BigDecimal referenceReal, BigDecimal referenceImag, int numberOfIterations, MathContext mc,
+			boolean doubleDoubleOrbit){
+		this.referenceReal = referenceReal;
+		this.referenceImag = referenceImag;
+		this.numberOfIterations = numberOfIterations;
+
+		orbitReal = new double[numberOfIterations + 1];
+		orbitImag = new double[numberOfIterations + 1];
+
+		if (doubleDoubleOrbit == true){
+			orbitLength = new DoubleDoubleCalculator(numberOfIterations).referenceOrbit(referenceReal, referenceImag, orbitReal, orbitImag);
+		} else {
+			orbitLength = bigDecimalOrbit(mc);
+		}
+
+		//When double-double has enough digits for the zoom the orbit is calculated with it, as BigDecimals are much slower.
+
+		seriesAReal = new double[orbitLength];
+		seriesAImag = new double[orbitLength];
+		seriesBReal = new double[orbitLength];
+		seriesBImag = new double[orbitLength];
+		seriesCReal = new double[orbitLength];
+		seriesCImag = new double[orbitLength];
+
+		int n = 0;
+		while (n + 1 < orbitLength){
+			double zr = orbitReal[n];
+			double zi = orbitImag[n];
+			double ar = seriesAReal[n];
+			double ai = seriesAImag[n];
+			double br = seriesBReal[n];
+			double bi = seriesBImag[n];
+			double cr = seriesCReal[n];
+			double ci = seriesCImag[n];
+
+			seriesAReal[n + 1] = 2 * (zr * ar - zi * ai) + 1;
+			seriesAImag[n + 1] = 2 * (zr * ai + zi * ar);
+			seriesBReal[n + 1] = 2 * (zr * br - zi * bi) + (ar * ar - ai * ai);
+			seriesBImag[n + 1] = 2 * (zr * bi + zi * br) + (2 * ar * ai);
+			seriesCReal[n + 1] = 2 * (zr * cr - zi * ci) + 2 * (ar * br - ai * bi);
+			seriesCImag[n + 1] = 2 * (zr * ci + zi * cr) + 2 * (ar * bi + ai * br);
+
+			if (!Double.isFinite(seriesCReal[n + 1]) || !Double.isFinite(seriesCImag[n + 1])){
+				break;
+			}
+
+			n ++;
+		}
+
+		seriesLength = n + 1;
+
+		/*
+		 * An+1 = 2 Zn An + 1, Bn+1 = 2 Zn Bn + An^2 and Cn+1 = 2 Zn Cn + 2 An Bn, starting from zero. The
+		 * coefficients are only worked out while they still fit in a double.
+		 */
+	}
+
+	private int bigDecimalOrbit(MathContext mc){
+		BigDecimal zReal = BigDecimal.ZERO;
+		BigDecimal zImag = BigDecimal.ZERO;
+		int length = 0;
+
+		while (length <= numberOfIterations){
+			orbitReal[length] = zReal.doubleValue();
+			orbitImag[length] = zImag.doubleValue();
+			length ++;
+
+			BigDecimal realSquared = zReal.multiply(zReal, mc);
+			BigDecimal imagSquared = zImag.multiply(zImag, mc);
+
+			if (realSquared.add(imagSquared, mc).compareTo(ESCAPELIMIT) > 0){
+				break; //The reference has escaped, pixels that need more of the orbit are rebased.
+			}
+
+			BigDecimal newImag = zReal.multiply(zImag, mc).multiply(BigDecimal.valueOf(2), mc).add(referenceImag, mc);
+			zReal = realSquared.subtract(imagSquared, mc).add(referenceReal, mc);
+			zImag = newImag;
+		}
+
+		return length;
+
+		//Iterates the reference point with BigDecimals at the given precision and stores each value rounded to doubles.
+	}
+
+	public static PerturbationReference forView(PreciseBounds bounds, int width, int height, int numberOfIterations){
+		MathContext mc = bounds.getMathContext(width, height);
+		BigDecimal centreReal = bounds.translateXCord(width / 2, width);
+		BigDecimal centreImag = bounds.translateYCord(height / 2, height);
+
+		boolean doubleDoubleOrbit = Math.min(Math.abs(bounds.getRealWidth().doubleValue()) / width,
+				Math.abs(bounds.getImagHeight().doubleValue()) / height) >= FractalView.DOUBLEDOUBLESAFESPACING;
+
+		return new PerturbationReference(centreReal, centreImag, numberOfIterations, mc, doubleDoubleOrbit);
+
+		//The centre pixel of the view is used as the reference point. Its orbit is calculated in double-double when that is precise enough.
+	}
+
+	public int getOrbitLength(){
+		return orbitLength;
+	}
+
+	public int seriesSkip(double maxDeltaSquared, double pixelSpacing){
+		double radius = Math.sqrt(maxDeltaSquared);
+		int skip = 0;
+
+		for (int n = 1; n < seriesLength && n < orbitLength - 1 && n < numberOfIterations; n++){
+			double aSize = Math.hypot(seriesAReal[n], seriesAImag[n]);
+			double cSize = Math.hypot(seriesCReal[n], seriesCImag[n]);
+
+			if (!((cSize * radius * radius * radius) < (SERIESTOLERANCE * pixelSpacing * aSize))){
+				break;
+			}
+
+			skip = n;
+		}
+
+		return skip;
+
+		/*
+		 * Returns how many iterations can be skipped for every pixel within the given distance of the reference.
+		 * Roughly, the error of the series gets multiplied by An in later iterations, so the series is trusted while
+		 * the size of its last term divided by An stays a small fraction of a pixel.
+		 */
+	}
+}
@@ -0,0 +1,30 @@
+public interface PixelCalculator {
+
+	/*
+	 * Works out the escape count of a pixel of a FractalView. Each render thread has its own PixelCalculator,
+	 * which may keep state between pixels, so one must never be shared between threads.
+	 */
+
+	void prepareTile(int xFrom, int yFrom, int xTo, int yTo);
+	//Called before the pixels of each tile are calculated, xTo and yTo are exclusive.
+
+	int calculatePixel(int xCord, int yCord);
+	//Returns the number of iterations the pixel takes to escape, or the maximum number of iterations if it never does.
+
+	double getLastModulusSquared();
+	//|z|^2 of the final z of the last pixel calculated, used for smooth coloring.
+
+	default void calculateRow(int yCord, int xFrom, int xTo, int[] counts, double[] moduliSquared){
+		for (int x = xFrom; x < xTo; x++){
+			counts[x - xFrom] = calculatePixel(x, yCord);
+			moduliSquared[x - xFrom] = getLastModulusSquared();
+		}
+
+		//Calculates a run of pixels from one row, xTo is exclusive. Calculators that can work on several pixels at once override this.
+	}
+
+	long getSettledByBulbTest();
+
+	long getSettledByCycle();
+	//Number of pixels so far that were found to be inside the set without running every iteration.
+}
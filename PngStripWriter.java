@@ -0,0 +1,147 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+public class PngStripWriter {
+	private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	private static final int CHUNKSIZE = 64 * 1024;
+	//IDAT chunks are written every time this many compressed bytes have built up.
+
+	private final DataOutputStream out;
+	private final int width;
+	private final int height;
+	private final DeflaterOutputStream compressor;
+	private final ChunkBuffer idat = new ChunkBuffer();
+	private final byte[] row;
+	private final byte[] rowColours;
+	private int rowsWritten = 0;
+
+	/*
+	 * Writes a PNG file a few rows at a time, so an image far bigger than the heap can be saved without ever
+	 * being held in memory at once. ImageIO needs the whole image as a BufferedImage, which at 16k x 16k is a
+	 * gigabyte. Here each strip of rows is filtered, fed through a Deflater and written out as IDAT chunks as
+	 * soon as enough compressed data has built up, so memory use depends only on the width of the image.
+	 *
+	 * The image is written as 8 bit RGB. Each row uses the Sub filter (the difference from the pixel to the
+	 * left), which suits the smooth color gradients of the fractals and is cheap to work out.
+	 */
+
+	public PngStripWriter(OutputStream out, int width, int height) throws IOException {
+		this.out = new DataOutputStream(out);
+		this.width = width;
+		this.height = height;
+		this.row = new byte[1 + (width * 3)];
+		this.rowColours = new byte[width * 3];
+		this.compressor = new DeflaterOutputStream(idat, new Deflater(Deflater.DEFAULT_COMPRESSION), CHUNKSIZE);
+
+		this.out.write(SIGNATURE);
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream headerData = new DataOutputStream(header);
+		headerData.writeInt(width);
+		headerData.writeInt(height);
+		headerData.writeByte(8); //Bits per channel
+		headerData.writeByte(2); //Color type RGB
+		headerData.writeByte(0); //Deflate compression
+		headerData.writeByte(0); //Adaptive filtering
+		headerData.writeByte(0); //No interlacing
+		writeChunk("IHDR", header.toByteArray(), header.size());
+	}
+
+	public int getRowsWritten(){
+		return rowsWritten;
+	}
+
+	public void writeRows(int[] pixels, int rows) throws IOException {
+		if (rowsWritten + rows > height){
+			throw new IllegalStateException("More rows written than the height of the image");
+		}
+
+		for (int y = 0; y < rows; y++){
+			int offset = y * width;
+			row[0] = 1; //Sub filter
+
+			for (int x = 0; x < width; x++){
+				int argb = pixels[offset + x];
+				rowColours[(x * 3)] = (byte) (argb >> 16);
+				rowColours[(x * 3) + 1] = (byte) (argb >> 8);
+				rowColours[(x * 3) + 2] = (byte) argb;
+			}
+
+			for (int i = 0; i < width * 3; i++){
+				int left = (i >= 3) ? rowColours[i - 3] : 0;
+				row[i + 1] = (byte) (rowColours[i] - left);
+			}
+
+			compressor.write(row);
+		}
+
+		rowsWritten += rows;
+
+		//pixels holds the rows in the usual ARGB ints, one row after another. The alpha channel is dropped.
+	}
+
+	public void finish() throws IOException {
+		if (rowsWritten != height){
+			throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows were written");
+		}
+
+		compressor.finish();
+		idat.flushChunk();
+		writeChunk("IEND", new byte[0], 0);
+		out.flush();
+
+		//Writes the last of the compressed data and the end of the file. The stream passed in is not closed.
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	class ChunkBuffer extends OutputStream {
+		private final byte[] buffer = new byte[CHUNKSIZE];
+		private int length = 0;
+
+		public void write(int b) throws IOException {
+			buffer[length ++] = (byte) b;
+
+			if (length == CHUNKSIZE){
+				flushChunk();
+			}
+		}
+
+		public void write(byte[] bytes, int offset, int count) throws IOException {
+			while (count > 0){
+				int copied = Math.min(count, CHUNKSIZE - length);
+				System.arraycopy(bytes, offset, buffer, length, copied);
+				length += copied;
+				offset += copied;
+				count -= copied;
+
+				if (length == CHUNKSIZE){
+					flushChunk();
+				}
+			}
+		}
+
+		void flushChunk() throws IOException {
+			if (length > 0){
+				writeChunk("IDAT", buffer, length);
+				length = 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+public class PreciseBounds {
+	private static final int EXTRADIGITS = 20;
+	//Digits of precision kept beyond what is needed to tell neighbouring pixels apart.
+
+	public final BigDecimal realAxisStart;
+	public final BigDecimal realAxisEnd;
+	public final BigDecimal imagAxisStart;
+	public final BigDecimal imagAxisEnd;
+
+	/*
+	 * The axis values of a view stored as BigDecimals. A double only has about 16 significant figures, so
+	 * after zooming in far enough the start and end of an axis can no longer be told apart as doubles. These
+	 * values keep as many digits as the zoom needs, and the pixel coordinates of a rubber band zoom are turned
+	 * into new axis values with the same precision.
+	 */
+
+	public PreciseBounds(BigDecimal realAxisStart, BigDecimal realAxisEnd, BigDecimal imagAxisStart, BigDecimal imagAxisEnd){
+		this.realAxisStart = realAxisStart;
+		this.realAxisEnd = realAxisEnd;
+		this.imagAxisStart = imagAxisStart;
+		this.imagAxisEnd = imagAxisEnd;
+	}
+
+	public static PreciseBounds of(double realAxisStart, double realAxisEnd, double imagAxisStart, double imagAxisEnd){
+		return new PreciseBounds(new BigDecimal(realAxisStart), new BigDecimal(realAxisEnd),
+				new BigDecimal(imagAxisStart), new BigDecimal(imagAxisEnd));
+
+		//The exact value of each double is kept so doubleValue gives back exactly the same doubles.
+	}
+
+	public BigDecimal getRealWidth(){
+		return realAxisEnd.subtract(realAxisStart);
+	}
+
+	public BigDecimal getImagHeight(){
+		return imagAxisEnd.subtract(imagAxisStart);
+	}
+
+	public MathContext getMathContext(int width, int height){
+		MathContext realContext = mathContextFor(getRealWidth(), width);
+		MathContext imagContext = mathContextFor(getImagHeight(), height);
+
+		return (realContext.getPrecision() > imagContext.getPrecision()) ? realContext : imagContext;
+
+		//Enough significant figures to resolve a single pixel on either axis, plus some spare for rounding in later calculations.
+	}
+
+	private static MathContext mathContextFor(BigDecimal span, int pixels){
+		double spacing = Math.abs(span.doubleValue()) / pixels;
+		int digits = EXTRADIGITS;
+
+		if (spacing > 0.0 && Double.isFinite(spacing)){
+			digits = digits + Math.max(0, (int) Math.ceil(-Math.log10(spacing)));
+		} else {
+			digits = digits + Math.max(0, span.scale());
+		}
+
+		return new MathContext(digits);
+	}
+
+	public BigDecimal translateXCord(int xCord, int width){
+		MathContext mc = mathContextFor(getRealWidth(), width);
+		return getRealWidth().multiply(BigDecimal.valueOf(xCord)).divide(BigDecimal.valueOf(width), mc).add(realAxisStart, mc);
+
+		//The real number that a certain x coordinate on a panel of the given width represents.
+	}
+
+	public BigDecimal translateYCord(int yCord, int height){
+		MathContext mc = mathContextFor(getImagHeight(), height);
+		return imagAxisStart.subtract(imagAxisEnd).multiply(BigDecimal.valueOf(yCord)).divide(BigDecimal.valueOf(height), mc).add(imagAxisEnd, mc);
+
+		//The imaginary number that a certain y coordinate represents. As with the panels the top row is imagAxisEnd.
+	}
+
+	public PreciseBounds zoom(int xCordStart, int yCordStart, int xCordEnd, int yCordEnd, int width, int height){
+		BigDecimal newRealStart = translateXCord(Math.min(xCordStart, xCordEnd), width);
+		BigDecimal newRealEnd = translateXCord(Math.max(xCordStart, xCordEnd), width);
+		BigDecimal newImagStart = translateYCord(Math.max(yCordStart, yCordEnd), height);
+		BigDecimal newImagEnd = translateYCord(Math.min(yCordStart, yCordEnd), height);
+
+		return new PreciseBounds(newRealStart, newRealEnd, newImagStart, newImagEnd);
+
+		//New bounds covering the rectangle between two pixel coordinates, whichever way round the rectangle was dragged.
+	}
+
+	public PreciseBounds pan(int xPixels, int yPixels, int width, int height){
+		MathContext mc = getMathContext(width, height);
+		BigDecimal realShift = getRealWidth().multiply(BigDecimal.valueOf(xPixels)).divide(BigDecimal.valueOf(width), mc);
+		BigDecimal imagShift = imagAxisStart.subtract(imagAxisEnd).multiply(BigDecimal.valueOf(yPixels)).divide(BigDecimal.valueOf(height), mc);
+
+		return new PreciseBounds(realAxisStart.add(realShift, mc), realAxisEnd.add(realShift, mc),
+				imagAxisStart.add(imagShift, mc), imagAxisEnd.add(imagShift, mc));
+
+		//Moves the view by a whole number of pixels without changing its size, so pixel (x, y) of the new view is pixel (x + xPixels, y + yPixels) of this one.
+	}
+
+	public PreciseBounds coarse(int step, int width, int height){
+		int coarseWidth = (width + step - 1) / step;
+		int coarseHeight = (height + step - 1) / step;
+		MathContext mc = getMathContext(width, height);
+
+		BigDecimal coarseRealEnd = getRealWidth().multiply(BigDecimal.valueOf((long) coarseWidth * step))
+				.divide(BigDecimal.valueOf(width), mc).add(realAxisStart, mc);
+		BigDecimal coarseImagStart = imagAxisStart.subtract(imagAxisEnd).multiply(BigDecimal.valueOf((long) coarseHeight * step))
+				.divide(BigDecimal.valueOf(height), mc).add(imagAxisEnd, mc);
+
+		return new PreciseBounds(realAxisStart, coarseRealEnd, coarseImagStart, imagAxisEnd);
+
+		//Matches FractalView.coarse, the end values are moved so every coarse pixel lands on a full resolution pixel.
+	}
+
+	public PreciseBounds band(int firstRow, int rows, int width, int height){
+		return new PreciseBounds(realAxisStart, realAxisEnd, translateYCord(firstRow + rows, height), translateYCord(firstRow, height));
+
+		//The bounds of a horizontal band of the view, the given number of rows starting from firstRow at the top.
+	}
+
+	public boolean equals(Object other){
+		if (!(other instanceof PreciseBounds)){
+			return false;
+		}
+
+		PreciseBounds bounds = (PreciseBounds) other;
+		return realAxisStart.compareTo(bounds.realAxisStart) == 0 && realAxisEnd.compareTo(bounds.realAxisEnd) == 0
+				&& imagAxisStart.compareTo(bounds.imagAxisStart) == 0 && imagAxisEnd.compareTo(bounds.imagAxisEnd) == 0;
+	}
+
+	public int hashCode(){
+		return java.util.Objects.hash(realAxisStart.doubleValue(), realAxisEnd.doubleValue(),
+				imagAxisStart.doubleValue(), imagAxisEnd.doubleValue());
+
+		//Based on the double values so bounds that compare equal always have the same hash code.
+	}
+
+	public String toString(){
+		return realAxisStart.toString() + " to " + realAxisEnd.toString() + ", " + imagAxisStart.toString() + " to " + imagAxisEnd.toString();
+	}
+}
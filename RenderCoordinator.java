@@ -0,0 +1,531 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RenderCoordinator {
+	public static final int DEFAULTBANDHEIGHT = 32;
+	public static final int DEFAULTTIMEOUT = 60000;
+	public static final int MAXRECONNECTS = 3;
+	private static final int CONNECTTIMEOUT = 5000;
+	private static final double SLOWFACTOR = 3.0;
+	private static final int AHEADPERWORKER = 4;
+	//How many bands each worker may be given past the one the PNG writer is waiting for.
+
+	private final List<InetSocketAddress> workers;
+	private final int bandHeight;
+	private final int timeout;
+
+	private final AtomicInteger redispatched = new AtomicInteger();
+	private final AtomicInteger duplicated = new AtomicInteger();
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	/*
+	 * Renders one image on several RenderWorker processes, which can be on other machines, and writes it to a PNG
+	 * file. The view is split into horizontal bands of --band rows, and every band is a job. There is a thread for
+	 * each worker, which keeps one connection open and takes the next job from a shared queue whenever its worker
+	 * has sent back the last one, so fast workers simply do more of the bands. The iteration data that comes back
+	 * is colored here and written in row order by a PngStripWriter, holding on to bands that arrive early. A
+	 * band is only handed out if it is fewer than AHEADPERWORKER bands a worker past the band the writer is waiting
+	 * for, so however slow that band is, only that many bands are ever held.
+	 *
+	 * A worker that does not answer within --timeout milliseconds, or whose connection breaks, has its job put back
+	 * at the front of the queue for another worker, and is connected to again up to MAXRECONNECTS times before it
+	 * is given up on. Near the end, when the queue is empty, a worker with nothing to do also takes a copy of any job
+	 * that has been running for SLOWFACTOR times as long as jobs normally take, so one slow machine does not hold
+	 * up the whole image. A worker that is held back because it is too far ahead does the same for the band the
+	 * writer is waiting for. Whichever copy comes back first is used.
+	 *
+	 * Usage:
+	 *   java -cp out RenderWorker --port 9091 &
+	 *   java -cp out RenderWorker --port 9092 &
+	 *   java -cp out RenderCoordinator --workers localhost:9091,localhost:9092 --size 4096x4096 --iterations 2000
+	 *
+	 * Options are the same as HeadlessRenderer, as well as:
+	 *   --workers HOST:PORT,...    the workers to use, localhost:9090 by default
+	 *   --timeout MS               how long to wait for a band before sending it elsewhere, 60000 by default
+	 *   --scaling                  render the image with 1, 2, ... up to all of the workers and print the speedup
+	 *
+	 * The speedup with n workers is the time with one worker divided by the time with n, and the efficiency is the
+	 * speedup divided by n. Workers on the same machine share its cores, so the efficiency is only meaningful for
+	 * workers on separate machines (or each given --threads so that they do not add up to more than the cores).
+	 */
+
+	public RenderCoordinator(List<InetSocketAddress> workers, int bandHeight, int timeout){
+		this.workers = workers;
+		this.bandHeight = Math.max(1, bandHeight);
+		this.timeout = timeout;
+	}
+
+	public void render(FractalView view, OutputStream out) throws IOException {
+		Render render = new Render(view);
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (InetSocketAddress address : workers){
+			Thread thread = new BackgroundRenderer.DaemonThreadFactory().newThread(new WorkerConnection(render, address));
+			thread.setName("coordinator-" + address);
+			threads.add(thread);
+			render.liveWorkers.incrementAndGet();
+		}
+
+		for (Thread thread : threads){
+			thread.start();
+		}
+
+		PngStripWriter writer = new PngStripWriter(out, view.width, view.height);
+		Palette palette = Palette.forView(view);
+		TreeMap<Integer, Job> early = new TreeMap<Integer, Job>();
+		int nextRow = 0;
+
+		try {
+			while (nextRow < view.height){
+				Job job = render.completed.poll(100, TimeUnit.MILLISECONDS);
+
+				if (job == null){
+					if (render.liveWorkers.get() == 0){
+						throw new IOException("None of the workers could be reached, " + (view.height - nextRow) + " rows were not rendered");
+					}
+
+					continue;
+				}
+
+				early.put(job.firstRow, job);
+
+				while (early.isEmpty() == false && early.firstKey() == nextRow){
+					Job band = early.pollFirstEntry().getValue();
+					int[] pixels = new int[view.width * band.rows];
+					band.result.colour(palette, pixels);
+					writer.writeRows(pixels, band.rows);
+					nextRow += band.rows;
+					render.writtenRows = nextRow;
+				}
+			}
+
+			writer.finish();
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the workers", e);
+		} finally {
+			render.finished = true;
+			render.closeAll();
+		}
+
+		/*
+		 * The bands are written as soon as every band above them has arrived, so the memory needed is only the
+		 * bands that came back early, which nextJob keeps to a few for each worker, not the whole image. The stream
+		 * is not closed.
+		 */
+	}
+
+	class Render {
+		final FractalView view;
+		final List<Job> jobs = new ArrayList<Job>();
+		final LinkedBlockingDeque<Job> pending = new LinkedBlockingDeque<Job>();
+		final ConcurrentHashMap<Job, Boolean> running = new ConcurrentHashMap<Job, Boolean>();
+		final LinkedBlockingQueue<Job> completed = new LinkedBlockingQueue<Job>();
+		final ConcurrentHashMap<Socket, Boolean> sockets = new ConcurrentHashMap<Socket, Boolean>();
+		final AtomicInteger liveWorkers = new AtomicInteger();
+		final AtomicLong jobNanos = new AtomicLong();
+		final AtomicInteger jobsTimed = new AtomicInteger();
+		final int aheadRows;
+		volatile int writtenRows = 0;
+		volatile boolean finished = false;
+
+		public Render(FractalView view){
+			this.aheadRows = AHEADPERWORKER * workers.size() * bandHeight;
+
+			this.view = view;
+
+			for (int firstRow = 0; firstRow < view.height; firstRow += bandHeight){
+				int rows = Math.min(bandHeight, view.height - firstRow);
+				Job job = new Job(jobs.size(), view.band(firstRow, rows), firstRow, rows);
+				jobs.add(job);
+				pending.add(job);
+			}
+		}
+
+		public Job nextJob() throws InterruptedException {
+			Job job = pending.poll(50, TimeUnit.MILLISECONDS);
+
+			while (job != null && job.done.get() == true){
+				job = pending.poll(); //A copy of it was finished by another worker.
+			}
+
+			if (job != null && job.firstRow >= writtenRows + aheadRows){
+				pending.addFirst(job);
+				Job waitedFor = overdueCopy(jobs.get(writtenRows / bandHeight));
+
+				if (waitedFor == null){
+					Thread.sleep(50);
+				}
+
+				return waitedFor;
+			}
+
+			return (job != null) ? job : slowJob();
+
+			/*
+			 * A job too far past the band the writer is waiting for is put back, and the worker either takes a copy
+			 * of that band, if it is overdue, or waits for it to arrive. Returns null if there is nothing to do yet.
+			 */
+		}
+
+		private Job slowJob(){
+			long now = System.nanoTime();
+			Job oldest = null;
+
+			for (Job job : running.keySet()){
+				if (isOverdue(job, now) == true && (oldest == null || job.started < oldest.started)){
+					oldest = job;
+				}
+			}
+
+			return (oldest != null) ? overdueCopy(oldest) : null;
+		}
+
+		private Job overdueCopy(Job job){
+			if (isOverdue(job, System.nanoTime()) == true && job.copies.compareAndSet(1, 2) == true){
+				duplicated.incrementAndGet();
+				return job;
+			}
+
+			return null;
+
+			//Only one extra copy of a job is ever made, so a job that is slow everywhere does not take every worker.
+		}
+
+		private boolean isOverdue(Job job, long now){
+			int timed = jobsTimed.get();
+
+			return timed > 0 && job.done.get() == false && job.copies.get() == 1
+					&& now - job.started > (long) (SLOWFACTOR * jobNanos.get() / timed);
+		}
+
+		public void complete(Job job, IterationMap result, long nanos){
+			if (job.done.compareAndSet(false, true) == true){
+				job.result = result;
+				running.remove(job);
+				jobNanos.addAndGet(nanos);
+				jobsTimed.incrementAndGet();
+				completed.add(job);
+			}
+		}
+
+		public void giveBack(Job job){
+			if (job.done.get() == false){
+				if (job.copies.decrementAndGet() == 0){
+					running.remove(job);
+					pending.addFirst(job);
+					redispatched.incrementAndGet();
+				}
+			}
+
+			//If another copy of the job is still running, that copy is left to finish it.
+		}
+
+		public void closeAll(){
+			for (Socket socket : sockets.keySet()){
+				try {
+					socket.close();
+				} catch (IOException e){
+					//Nothing more is needed from this worker.
+				}
+			}
+		}
+	}
+
+	static class Job {
+		final int id;
+		final FractalView view;
+		final int firstRow;
+		final int rows;
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicInteger copies = new AtomicInteger(0);
+		volatile long started;
+		volatile IterationMap result;
+
+		public Job(int id, FractalView view, int firstRow, int rows){
+			this.id = id;
+			this.view = view;
+			this.firstRow = firstRow;
+			this.rows = rows;
+		}
+	}
+
+	class WorkerConnection implements Runnable {
+		private final Render render;
+		private final InetSocketAddress address;
+		private Socket socket;
+		private DataInputStream in;
+		private DataOutputStream out;
+
+		public WorkerConnection(Render render, InetSocketAddress address){
+			this.render = render;
+			this.address = address;
+		}
+
+		public void run(){
+			int failures = 0;
+
+			try {
+				while (render.finished == false && failures <= MAXRECONNECTS){
+					if (socket == null){
+						try {
+							connect();
+						} catch (IOException e){
+							failures++;
+							System.err.println("Could not connect to " + address + ": " + e.getMessage());
+							Thread.sleep(200L * failures);
+							continue;
+						}
+					}
+
+					Job job = render.nextJob();
+					if (job == null){
+						continue;
+					}
+
+					if (job.copies.compareAndSet(0, 1) == true){
+						job.started = System.nanoTime();
+						render.running.put(job, Boolean.TRUE);
+					}
+
+					//A job taken by slowJob already has its first copy running, so only a job from the queue is claimed here.
+
+					try {
+						long start = System.nanoTime();
+						IterationMap result = send(job);
+						render.complete(job, result, System.nanoTime() - start);
+						failures = 0;
+					} catch (IOException e){
+						if (render.finished == false){
+							failures++;
+							System.err.println((e instanceof SocketTimeoutException ? "Timed out waiting for " : "Lost ") + address
+									+ ", rows " + job.firstRow + " to " + (job.firstRow + job.rows - 1) + " will be sent again");
+						}
+
+						disconnect();
+						render.giveBack(job);
+					}
+				}
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			} finally {
+				disconnect();
+				render.liveWorkers.decrementAndGet();
+			}
+
+			if (render.finished == false){
+				System.err.println("Gave up on " + address);
+			}
+		}
+
+		private void connect() throws IOException {
+			Socket s = new Socket();
+			render.sockets.put(s, Boolean.TRUE);
+			socket = s;
+
+			try {
+				s.connect(address, CONNECTTIMEOUT);
+				s.setTcpNoDelay(true);
+				s.setSoTimeout(timeout);
+				in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+				out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+
+				out.writeInt(RenderWorker.MAGIC);
+				out.flush();
+				if (in.readInt() != RenderWorker.MAGIC){
+					throw new IOException("Not a RenderWorker of this version");
+				}
+			} catch (IOException e){
+				disconnect();
+				throw e;
+			}
+
+			//The socket is registered before connecting so that finishing the render can close it at any point.
+		}
+
+		private void disconnect(){
+			if (socket != null){
+				try {
+					socket.close();
+				} catch (IOException e){
+					//It is being thrown away anyway.
+				}
+
+				render.sockets.remove(socket);
+				socket = null;
+			}
+		}
+
+		private IterationMap send(Job job) throws IOException {
+			RenderWorker.writeJob(out, job.id, render.view, job.firstRow, job.rows);
+			out.flush();
+
+			if (in.readInt() != job.id){
+				throw new IOException("The worker answered a different job");
+			}
+
+			IterationMap result = new IterationMap(job.view);
+			RenderWorker.readMap(in, result);
+			bytesReceived.addAndGet(job.rows * job.view.width * 8L); //Counted uncompressed, see getBytesReceived.
+			return result;
+
+			/*
+			 * The socket timeout applies to every read, so a worker that has stopped answering is noticed after
+			 * the timeout rather than never.
+			 */
+		}
+	}
+
+	public int getRedispatched(){
+		return redispatched.get();
+	}
+
+	public int getDuplicated(){
+		return duplicated.get();
+	}
+
+	public long getBytesReceived(){
+		return bytesReceived.get();
+
+		//The size of the iteration data received before it was compressed, 8 bytes a pixel.
+	}
+
+	public static void main(String[] args){
+		String type = "mandelbrot";
+		String real = null;
+		String imag = null;
+		String julia = "-0.5,0.5";
+		String size = "1920x1080";
+		int iterations = 100;
+		int bandHeight = DEFAULTBANDHEIGHT;
+		int timeout = DEFAULTTIMEOUT;
+		String workerList = "localhost:" + RenderWorker.DEFAULTPORT;
+		boolean scaling = false;
+		String outFile = "fractal.png";
+
+		try {
+			for (int i = 0; i < args.length; i += 2){
+				String value = (i + 1 < args.length) ? args[i + 1] : "";
+
+				switch (args[i]){
+					case "--type": type = value.toLowerCase(); break;
+					case "--real": real = value; break;
+					case "--imag": imag = value; break;
+					case "--julia": julia = value; break;
+					case "--size": size = value.toLowerCase(); break;
+					case "--iterations": iterations = Integer.parseInt(value); break;
+					case "--band": bandHeight = Integer.parseInt(value); break;
+					case "--workers": workerList = value; break;
+					case "--timeout": timeout = Integer.parseInt(value); break;
+					case "--scaling": scaling = true; i--; break;
+					case "--out": outFile = value; break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			boolean isJulia = type.equals("julia");
+			if (isJulia == false && type.equals("mandelbrot") == false){
+				throw new IllegalArgumentException("--type must be mandelbrot or julia");
+			}
+
+			BigDecimal[] realAxis = HeadlessRenderer.pair((real != null) ? real : (isJulia ? "-2.0,2.0" : "-2.0,1.0"));
+			BigDecimal[] imagAxis = HeadlessRenderer.pair((imag != null) ? imag : (isJulia ? "-1.6,1.6" : "-1.2,1.2"));
+			String[] dimensions = size.split("x");
+			int width = Integer.parseInt(dimensions[0].trim());
+			int height = Integer.parseInt(dimensions[1].trim());
+
+			if (width < 1 || height < 1 || iterations < 1 || timeout < 1){
+				throw new IllegalArgumentException("The size, number of iterations and timeout must be positive");
+			}
+
+			FractalView view;
+			if (isJulia == true){
+				BigDecimal[] constant = HeadlessRenderer.pair(julia);
+				view = FractalView.julia(realAxis[0].doubleValue(), realAxis[1].doubleValue(), imagAxis[0].doubleValue(), imagAxis[1].doubleValue(),
+						width, height, iterations, constant[0].doubleValue(), constant[1].doubleValue());
+			} else {
+				view = FractalView.mandelbrot(new PreciseBounds(realAxis[0], realAxis[1], imagAxis[0], imagAxis[1]), width, height, iterations);
+			}
+
+			List<InetSocketAddress> workers = new ArrayList<InetSocketAddress>();
+			for (String worker : workerList.split(",")){
+				String[] hostPort = worker.trim().split(":");
+				if (hostPort.length != 2){
+					throw new IllegalArgumentException("Workers must be given as HOST:PORT: " + worker);
+				}
+
+				workers.add(new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1])));
+			}
+
+			if (scaling == true){
+				scaling(view, workers, bandHeight, timeout);
+			}
+
+			RenderCoordinator coordinator = new RenderCoordinator(workers, bandHeight, timeout);
+			long start = System.nanoTime();
+
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outFile), 1 << 16)){
+				coordinator.render(view, out);
+			}
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("Wrote %s (%dx%d, %d iterations) in %.1fs on %d workers%n",
+					outFile, width, height, iterations, seconds, workers.size());
+			System.out.printf("%d bands sent again after a failure, %d copies of slow bands, %.1f MB of iteration data%n",
+					coordinator.getRedispatched(), coordinator.getDuplicated(), coordinator.getBytesReceived() / 1e6);
+		} catch (IOException e){
+			System.err.println("There was a problem creating your file: " + e.getMessage());
+			System.exit(1);
+		} catch (RuntimeException e){
+			System.err.println(e.getMessage());
+			System.err.println("Usage: RenderCoordinator [--type mandelbrot|julia] [--real START,END] [--imag START,END] [--julia REAL,IMAG]");
+			System.err.println("                         [--size WIDTHxHEIGHT] [--iterations N] [--band ROWS] [--out FILE]");
+			System.err.println("                         [--workers HOST:PORT,...] [--timeout MS] [--scaling]");
+			System.exit(2);
+		}
+	}
+
+	private static void scaling(FractalView view, List<InetSocketAddress> workers, int bandHeight, int timeout) throws IOException {
+		double oneWorker = 0.0;
+
+		System.out.println("workers  seconds  speedup  efficiency");
+
+		for (int n = 1; n <= workers.size(); n++){
+			RenderCoordinator coordinator = new RenderCoordinator(workers.subList(0, n), bandHeight, timeout);
+			long start = System.nanoTime();
+			coordinator.render(view, OutputStream.nullOutputStream());
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			if (n == 1){
+				oneWorker = seconds;
+			}
+
+			double speedup = oneWorker / seconds;
+			System.out.printf("%7d  %7.2f  %7.2f  %9.0f%%%n", n, seconds, speedup, 100.0 * speedup / n);
+		}
+
+		/*
+		 * Each run includes connecting, sending the jobs, compressing and coloring, as a real render would, but
+		 * the image is thrown away. The first worker's time is the baseline for the rest.
+		 */
+	}
+}
@@ -0,0 +1,428 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class RenderEngine {
+	public static final int DEFAULTTILESIZE = 32;
+
+	private final ForkJoinPool pool;
+	private final int tileSize;
+
+	private volatile boolean subdivision = false;
+	private volatile boolean strictSubdivision = false;
+	private volatile boolean symmetry = true;
+
+	/*
+	 * The RenderEngine splits an image into square tiles and computes them on a ForkJoinPool. Tiles
+	 * inside the set take far longer than tiles outside it, so the tiles are handed out by recursively
+	 * splitting the list of tiles in half. Idle threads steal the other halves, which keeps every core
+	 * busy until the last tile is done.
+	 */
+
+	public RenderEngine(){
+		this(Integer.getInteger("render.parallelism", Runtime.getRuntime().availableProcessors()));
+
+		//Parallelism defaults to the number of cores but can be set with -Drender.parallelism=n
+	}
+
+	public RenderEngine(int parallelism){
+		this(parallelism, DEFAULTTILESIZE);
+	}
+
+	public RenderEngine(int parallelism, int tileSize){
+		this.pool = new ForkJoinPool(Math.max(1, parallelism));
+		this.tileSize = Math.max(1, tileSize);
+
+		String subdivisionMode = System.getProperty("render.subdivision", "off");
+		setSubdivision(!subdivisionMode.equals("off"), subdivisionMode.equals("strict"));
+
+		setSymmetry(Boolean.parseBoolean(System.getProperty("render.symmetry", "true")));
+
+		//Subdivision rendering is off unless turned on with -Drender.subdivision=on or -Drender.subdivision=strict
+		//Symmetry is used unless turned off with -Drender.symmetry=false
+	}
+
+	public void setSubdivision(boolean subdivision, boolean strict){
+		this.subdivision = subdivision;
+		this.strictSubdivision = strict;
+
+		/*
+		 * When subdivision is on each tile is rendered by a SubdivisionRenderer, which fills in rectangles
+		 * with a uniform border instead of iterating every pixel. Strict mode spot checks each rectangle first.
+		 * Only Mandelbrot views are subdivided, see isSubdivision.
+		 */
+	}
+
+	public boolean isSubdivision(FractalView view){
+		return subdivision == true && view.type == FractalType.MANDELBROT;
+
+		/*
+		 * Filling a rectangle from its border is only safe when the set has no holes. A Julia set whose constant is
+		 * outside the Mandelbrot set is dust, and no spot check finds every hole, so Julia views are always iterated
+		 * pixel by pixel.
+		 */
+	}
+
+	public void setSymmetry(boolean symmetry){
+		this.symmetry = symmetry;
+
+		//When on, pixels that are the exact mirror image of another pixel in the view are copied instead of iterated.
+	}
+
+	public boolean isSymmetry(){
+		return symmetry;
+	}
+
+	public int getParallelism(){
+		return pool.getParallelism();
+	}
+
+	public int getTileSize(){
+		return tileSize;
+	}
+
+	public void render(FractalView view, BufferedImage image){
+		render(view, image, new AtomicBoolean(false), new RenderStatistics());
+	}
+
+	public boolean render(FractalView view, BufferedImage image, AtomicBoolean cancelled, RenderStatistics statistics){
+		return render(new IterationMap(view), image, cancelled, statistics);
+	}
+
+	public boolean render(IterationMap map, BufferedImage image, AtomicBoolean cancelled, RenderStatistics statistics){
+		FractalView view = map.view;
+		int[] pixels = rasterPixels(view, image);
+
+		if (pixels != null){
+			return render(map, pixels, cancelled, statistics);
+		}
+
+		pixels = new int[view.width * view.height];
+
+		if (render(map, pixels, cancelled, statistics) == false){
+			return false;
+		}
+
+		image.setRGB(0, 0, view.width, view.height, pixels, 0, view.width);
+		return true;
+
+		/*
+		 * When the image is a plain TYPE_INT_ARGB image the same size as the view, tiles write their colors
+		 * straight into the int array behind the image. Any other image is rendered into a separate array and
+		 * copied in with setRGB at the end. Returns false if the render was cancelled part way through, in which
+		 * case the image may be only partly drawn.
+		 */
+	}
+
+	static int[] rasterPixels(FractalView view, BufferedImage image){
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB || image.getWidth() != view.width || image.getHeight() != view.height){
+			return null;
+		}
+
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+		//Returns the int array holding the image's pixels, or null if the image cannot be written to directly.
+	}
+
+	public void render(FractalView view, int[] pixels){
+		render(view, pixels, new AtomicBoolean(false), new RenderStatistics());
+	}
+
+	public boolean render(FractalView view, int[] pixels, AtomicBoolean cancelled, RenderStatistics statistics){
+		return render(new IterationMap(view), pixels, cancelled, statistics);
+	}
+
+	public boolean render(IterationMap map, int[] pixels, AtomicBoolean cancelled, RenderStatistics statistics){
+		return render(map, pixels, cancelled, statistics, 0, 0, map.view.width, map.view.height);
+	}
+
+	public boolean render(IterationMap map, int[] pixels, AtomicBoolean cancelled, RenderStatistics statistics,
+			int regionX, int regionY, int regionWidth, int regionHeight){
+		long start = System.nanoTime();
+		FractalView view = map.view;
+		RenderJob job = new RenderJob(map, pixels, cancelled, statistics, regionX, regionY, regionWidth, regionHeight);
+
+		if (job.tileCount() == 0){
+			return true; //Nothing to render if the panel has not been given a size yet.
+		}
+
+		if (view.usesPerturbation() == true){
+			view.getReference(); //The reference orbit is calculated before the tiles start so no pool thread waits on it.
+		}
+
+		pool.invoke(new TileTask(job, 0, job.tileCount()));
+
+		if (cancelled.get() == true){
+			return false;
+		}
+
+		if (job.symmetry != null){
+			job.symmetry.copyMirrored(map);
+
+			if (pixels != null){
+				long colourStart = System.nanoTime();
+				map.colour(job.palette, pixels);
+				statistics.addColourTime(System.nanoTime() - colourStart);
+			}
+		}
+
+		statistics.countPixels(map, regionX, regionY, regionX + regionWidth, regionY + regionHeight);
+		statistics.addRenderTime(System.nanoTime() - start);
+		return true;
+
+		/*
+		 * The escape counts and smooth values are stored in the IterationMap, and each tile is colored into
+		 * the pixels straight after it is iterated. pixels can be null to fill in only the map.
+		 * 
+		 * Only the pixels inside the given region are rendered, the rest of the map and array are left alone.
+		 * This is used when panning, where most of the image can be copied from the previous one.
+		 * 
+		 * When the whole view is rendered and it contains mirror images of itself, the tiles skip every pixel
+		 * that Symmetry can copy. Those pixels are copied and the image colored once all the tiles are done.
+		 * 
+		 * The cancelled flag is checked before every tile is started, so once another thread sets it the
+		 * remaining tiles are skipped and the render finishes within the time of a single tile.
+		 */
+	}
+
+	public boolean render(List<IterationMap> maps, AtomicBoolean cancelled, RenderStatistics statistics){
+		List<RenderJob> jobs = new ArrayList<RenderJob>();
+
+		for (IterationMap map : maps){
+			if (map.view.usesPerturbation() == true){
+				map.view.getReference();
+			}
+
+			jobs.add(new RenderJob(map, null, cancelled, statistics, 0, 0, map.view.width, map.view.height));
+		}
+
+		pool.invoke(new JobsTask(jobs, 0, jobs.size()));
+
+		if (cancelled.get() == true){
+			return false;
+		}
+
+		for (RenderJob job : jobs){
+			if (job.symmetry != null){
+				job.symmetry.copyMirrored(job.map);
+			}
+		}
+
+		return true;
+
+		/*
+		 * Iterates several small maps at once, such as the missing tiles of a TileCache. Rendering them one at a
+		 * time would leave most of the pool idle, since each has only a few tiles of its own. Only the maps are
+		 * filled in, nothing is colored, and the pixel counts and render time are left to the caller.
+		 */
+	}
+
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	private void renderTile(RenderJob job, int tile){
+		FractalView view = job.view;
+		PixelCalculator calculator = view.createPixelCalculator(); //Each tile has its own calculator so no state is shared between threads.
+
+		int xFrom = job.regionX + (tile % job.tilesAcross) * tileSize;
+		int yFrom = job.regionY + (tile / job.tilesAcross) * tileSize;
+		int xTo = Math.min(xFrom + tileSize, job.regionX + job.regionWidth);
+		int yTo = Math.min(yFrom + tileSize, job.regionY + job.regionHeight);
+
+		RenderEvents.TileCompute event = new RenderEvents.TileCompute();
+		event.begin();
+
+		long start = System.nanoTime();
+		long iterations = 0;
+		int tilePixels = (xTo - xFrom) * (yTo - yFrom);
+		int iterated = tilePixels;
+		calculator.prepareTile(xFrom, yFrom, xTo, yTo);
+
+		int[] counts = new int[xTo - xFrom];
+		double[] moduliSquared = new double[xTo - xFrom];
+		//Reused by every run of the tile, so rendering a tile allocates the same whatever its shape.
+
+		if (isSubdivision(view) == true){
+			SubdivisionRenderer subdivider = new SubdivisionRenderer(view, calculator, strictSubdivision);
+			iterated = subdivider.renderTile(job.map, xFrom, yFrom, xTo, yTo);
+			iterations = subdivider.getIterations();
+		} else if (job.symmetry != null){
+			iterated = 0;
+
+			for (int y = yFrom; y < yTo; y++){
+				int x = xFrom;
+
+				while (x < xTo){
+					if (job.symmetry.partner(x, y) >= 0){
+						x ++;
+						continue; //Copied from its mirror image after all the tiles are done.
+					}
+
+					int runEnd = x + 1;
+					while (runEnd < xTo && job.symmetry.partner(runEnd, y) < 0){
+						runEnd ++;
+					}
+
+					iterations += calculateRun(job, calculator, y, x, runEnd, counts, moduliSquared);
+					iterated += runEnd - x;
+					x = runEnd;
+				}
+			}
+		} else {
+			for (int y = yFrom; y < yTo; y++){
+				iterations += calculateRun(job, calculator, y, xFrom, xTo, counts, moduliSquared);
+			}
+		}
+
+		long calculated = System.nanoTime();
+		event.end();
+		job.statistics.addTile(tilePixels, iterated, calculator);
+		job.statistics.addIterations(iterations);
+		job.statistics.addIterateTime(calculated - start);
+
+		if (event.shouldCommit()){
+			event.setView(view);
+			event.tileX = xFrom;
+			event.tileY = yFrom;
+			event.pixels = tilePixels;
+			event.iteratedPixels = iterated;
+			event.cancelled = job.cancelled.get();
+			event.commit();
+		}
+
+		if (job.pixels != null && job.symmetry == null){
+			job.map.colour(job.palette, job.pixels, xFrom, yFrom, xTo, yTo); //The tile is still in the cache so it is colored straight away.
+			job.statistics.addColourTime(System.nanoTime() - calculated);
+		}
+
+		//With symmetry the image is colored once the mirrored pixels have been copied, after all the tiles are done.
+	}
+
+	private long calculateRun(RenderJob job, PixelCalculator calculator, int y, int xFrom, int xTo, int[] counts, double[] moduliSquared){
+		long iterations = 0;
+
+		calculator.calculateRow(y, xFrom, xTo, counts, moduliSquared);
+
+		for (int x = xFrom; x < xTo; x++){
+			iterations += counts[x - xFrom];
+
+			if (counts[x - xFrom] == job.view.numberOfIterations){
+				job.map.setInside(x, y);
+			} else {
+				job.map.setEscaped(x, y, counts[x - xFrom], moduliSquared[x - xFrom]);
+			}
+		}
+
+		return iterations;
+
+		/*
+		 * Pixels are calculated a run at a time so calculators that work on several pixels at once can do so. counts
+		 * and moduliSquared are the tile's buffers, at least as long as the run, and only their start is used.
+		 * Returns the sum of the escape counts.
+		 */
+	}
+
+	class RenderJob {
+		final FractalView view;
+		final Palette palette;
+		final IterationMap map;
+		final Symmetry symmetry;
+		final int[] pixels;
+		final AtomicBoolean cancelled;
+		final RenderStatistics statistics;
+		final int regionX;
+		final int regionY;
+		final int regionWidth;
+		final int regionHeight;
+		final int tilesAcross;
+		final int tilesDown;
+
+		//Everything the tiles of one render share.
+
+		public RenderJob(IterationMap map, int[] pixels, AtomicBoolean cancelled, RenderStatistics statistics,
+				int regionX, int regionY, int regionWidth, int regionHeight){
+			this.view = map.view;
+			this.palette = Palette.forView(view);
+			this.map = map;
+			this.pixels = pixels;
+			this.cancelled = cancelled;
+			this.statistics = statistics;
+			this.regionX = regionX;
+			this.regionY = regionY;
+			this.regionWidth = Math.max(0, regionWidth);
+			this.regionHeight = Math.max(0, regionHeight);
+			this.tilesAcross = (this.regionWidth + tileSize - 1) / tileSize;
+			this.tilesDown = (this.regionHeight + tileSize - 1) / tileSize;
+
+			boolean wholeView = regionX == 0 && regionY == 0 && this.regionWidth == view.width && this.regionHeight == view.height;
+			this.symmetry = (RenderEngine.this.symmetry == true && isSubdivision(view) == false && wholeView == true) ? Symmetry.forView(view) : null;
+
+			//Symmetry is only used when the whole view is rendered, so the pixels being copied are always rendered too.
+		}
+
+		public int tileCount(){
+			return tilesAcross * tilesDown;
+		}
+	}
+
+	class JobsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final List<RenderJob> jobs;
+		private final int firstJob;
+		private final int lastJob;
+
+		public JobsTask(List<RenderJob> jobs, int firstJob, int lastJob){
+			this.jobs = jobs;
+			this.firstJob = firstJob;
+			this.lastJob = lastJob;
+		}
+
+		protected void compute(){
+			if (lastJob - firstJob == 1){
+				RenderJob job = jobs.get(firstJob);
+				if (job.tileCount() > 0){
+					new TileTask(job, 0, job.tileCount()).invoke();
+				}
+			} else if (lastJob - firstJob > 1){
+				int middle = (firstJob + lastJob) >>> 1;
+				invokeAll(new JobsTask(jobs, firstJob, middle), new JobsTask(jobs, middle, lastJob));
+			}
+
+			//The list of jobs is halved the same way as the tiles, then each job's tiles are split by a TileTask.
+		}
+	}
+
+	class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final RenderJob job;
+		private final int firstTile;
+		private final int lastTile;
+
+		public TileTask(RenderJob job, int firstTile, int lastTile){
+			this.job = job;
+			this.firstTile = firstTile;
+			this.lastTile = lastTile;
+		}
+
+		protected void compute(){
+			if (job.cancelled.get() == true){
+				return;
+			} else if (lastTile - firstTile == 1){
+				renderTile(job, firstTile);
+			} else {
+				int middle = (firstTile + lastTile) >>> 1;
+				invokeAll(new TileTask(job, firstTile, middle), new TileTask(job, middle, lastTile));
+			}
+
+			/*
+			 * The range of tiles is halved until each task has one tile. The two halves are forked so
+			 * any idle thread can steal whichever half is still waiting.
+			 */
+		}
+	}
+}
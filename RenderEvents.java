@@ -0,0 +1,124 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+public class RenderEvents {
+
+	/*
+	 * Java Flight Recorder events for each stage of a render, so a real session can be profiled by starting the
+	 * viewer with -XX:StartFlightRecording=filename=viewer.jfr (or with jcmd while it runs) and opening the file
+	 * in JDK Mission Control. They show up under Fractal Viewer.
+	 *
+	 *   Render Request   one request from the GUI, from the moment it starts rendering until it finishes or is cancelled
+	 *   Tile Compute     the iterating of one tile on a render thread
+	 *   Colour Pass      turning iteration data into colors, for a tile or a whole image
+	 *   Image Blit       a panel drawing its image on screen
+	 *   File IO          reading or writing the favourites file, or saving an image
+	 *
+	 * The events are always in the code. When no recording is running (or the event is turned off in the
+	 * recording settings) begin, end and shouldCommit do nothing, and because the event object never leaves the
+	 * method the JIT does not even allocate it, so they cost next to nothing. The fields are only filled in after
+	 * shouldCommit has said the event will be recorded.
+	 */
+
+	private RenderEvents(){}
+
+	@Category("Fractal Viewer")
+	abstract static class ViewEvent extends Event {
+		@Label("Fractal")
+		String fractal;
+
+		@Label("Real Axis Start")
+		double realAxisStart;
+
+		@Label("Real Axis End")
+		double realAxisEnd;
+
+		@Label("Imaginary Axis Start")
+		double imagAxisStart;
+
+		@Label("Imaginary Axis End")
+		double imagAxisEnd;
+
+		@Label("Iterations")
+		@Description("Maximum number of iterations")
+		int iterations;
+
+		@Label("Pixels")
+		long pixels;
+
+		@Label("Cancelled")
+		boolean cancelled;
+
+		void setView(FractalView view){
+			fractal = view.type.toString();
+			realAxisStart = view.realAxisStart;
+			realAxisEnd = view.realAxisEnd;
+			imagAxisStart = view.imagAxisStart;
+			imagAxisEnd = view.imagAxisEnd;
+			iterations = view.numberOfIterations;
+			pixels = (long) view.width * view.height;
+		}
+
+		//The fields every render event has. pixels is the whole view here, the tile and colour events change it to their own area.
+	}
+
+	@Name("fractalviewer.RenderRequest")
+	@Label("Render Request")
+	@Description("A render asked for by the GUI, until it finishes or is cancelled")
+	static class Request extends ViewEvent {
+		@Label("Source")
+		@Description("What asked for the render, such as UpdateListener or Julia hover")
+		String source;
+	}
+
+	@Name("fractalviewer.TileCompute")
+	@Label("Tile Compute")
+	@Description("Iterating the pixels of one tile")
+	static class TileCompute extends ViewEvent {
+		@Label("Tile X")
+		int tileX;
+
+		@Label("Tile Y")
+		int tileY;
+
+		@Label("Iterated Pixels")
+		@Description("Pixels actually calculated, the rest were filled in or copied")
+		long iteratedPixels;
+	}
+
+	@Name("fractalviewer.ColourPass")
+	@Label("Colour Pass")
+	@Description("Colouring iteration data with a palette")
+	static class ColourPass extends ViewEvent {}
+
+	@Name("fractalviewer.ImageBlit")
+	@Label("Image Blit")
+	@Description("A panel drawing its image on screen")
+	static class ImageBlit extends ViewEvent {
+		@Label("Step")
+		@Description("Screen pixels covered by each image pixel, more than 1 for previews")
+		int step;
+	}
+
+	@Name("fractalviewer.FileIO")
+	@Label("File IO")
+	@Category("Fractal Viewer")
+	static class FileIO extends Event {
+		@Label("Operation")
+		String operation;
+
+		@Label("Path")
+		String path;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+
+		@Label("Failed")
+		boolean failed;
+	}
+}
@@ -0,0 +1,185 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class RenderMetrics implements RenderMetricsMBean {
+	public static final int WINDOW = 256;
+	//Number of recent renders the percentiles are worked out from.
+
+	private final long[] renderNanos = new long[WINDOW];
+	private final long[] iterateNanos = new long[WINDOW];
+	private final long[] colourNanos = new long[WINDOW];
+	private final long[] blitNanos = new long[WINDOW];
+	private int renders = 0;
+	private int blits = 0;
+	//Ring buffers, the newest entry is at (renders - 1) % WINDOW.
+
+	private long totalPixels = 0;
+	private long totalIterations = 0;
+	private double lastPixelsPerSecond = 0.0;
+	private double lastIterationsPerSecond = 0.0;
+	private long lastEscaped = 0;
+	private long lastInterior = 0;
+	private final long[] lastHistogram = new long[RenderStatistics.HISTOGRAMBUCKETS];
+
+	/*
+	 * Keeps the RenderStatistics of the recent full resolution renders of one panel, along with how long the panel
+	 * took to draw (blit) each image, and shows them over JMX. Recording only copies numbers into arrays made when
+	 * the RenderMetrics is created, so it allocates nothing and can be left on all the time. The percentiles are
+	 * only sorted out when something asks for them, which is never on the render threads.
+	 */
+
+	public static RenderMetrics register(String name){
+		RenderMetrics metrics = new RenderMetrics();
+
+		try {
+			ObjectName objectName = new ObjectName("FractalViewer:type=RenderMetrics,name=" + name);
+			if (ManagementFactory.getPlatformMBeanServer().isRegistered(objectName) == false){
+				ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+			}
+		} catch (JMException e){
+			System.err.println("Could not register the render metrics for " + name);
+		}
+
+		return metrics;
+
+		//The metrics are still recorded, and shown by the HUD, if they cannot be registered.
+	}
+
+	public synchronized void record(RenderStatistics statistics){
+		int slot = renders % WINDOW;
+		renderNanos[slot] = statistics.getRenderNanos();
+		iterateNanos[slot] = statistics.getIterateNanos();
+		colourNanos[slot] = statistics.getColourNanos();
+		renders ++;
+
+		totalPixels += statistics.getPixels();
+		totalIterations += statistics.getIterations();
+		lastPixelsPerSecond = statistics.getPixelsPerSecond();
+		lastIterationsPerSecond = statistics.getIterationsPerSecond();
+		lastEscaped = statistics.getEscapedPixels();
+		lastInterior = statistics.getInteriorPixels();
+
+		for (int bucket = 0; bucket < lastHistogram.length; bucket++){
+			lastHistogram[bucket] = statistics.getEscapeHistogram(bucket);
+		}
+	}
+
+	public synchronized void recordBlit(long nanos){
+		blitNanos[blits % WINDOW] = nanos;
+		blits ++;
+	}
+
+	private synchronized double percentile(long[] ring, int count, double fraction){
+		int size = Math.min(count, WINDOW);
+		if (size == 0){
+			return 0.0;
+		}
+
+		long[] sorted = Arrays.copyOf(ring, size);
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(fraction * size) - 1;
+		return sorted[Math.max(0, rank)] / 1e6;
+
+		//Nearest rank percentile in milliseconds. Once the ring is full its order no longer matters, so the first size entries are all in use.
+	}
+
+	public synchronized long getRenders(){
+		return renders;
+	}
+
+	public synchronized long getTotalPixels(){
+		return totalPixels;
+	}
+
+	public synchronized long getTotalIterations(){
+		return totalIterations;
+	}
+
+	public synchronized double getLastRenderMillis(){
+		return (renders == 0) ? 0.0 : renderNanos[(renders - 1) % WINDOW] / 1e6;
+	}
+
+	public double getRenderMillisP50(){
+		return percentile(renderNanos, renders, 0.50);
+	}
+
+	public double getRenderMillisP90(){
+		return percentile(renderNanos, renders, 0.90);
+	}
+
+	public double getRenderMillisP99(){
+		return percentile(renderNanos, renders, 0.99);
+	}
+
+	public double getIterateMillisP50(){
+		return percentile(iterateNanos, renders, 0.50);
+	}
+
+	public double getIterateMillisP90(){
+		return percentile(iterateNanos, renders, 0.90);
+	}
+
+	public double getIterateMillisP99(){
+		return percentile(iterateNanos, renders, 0.99);
+	}
+
+	public double getColourMillisP50(){
+		return percentile(colourNanos, renders, 0.50);
+	}
+
+	public double getColourMillisP90(){
+		return percentile(colourNanos, renders, 0.90);
+	}
+
+	public double getColourMillisP99(){
+		return percentile(colourNanos, renders, 0.99);
+	}
+
+	public double getBlitMillisP50(){
+		return percentile(blitNanos, blits, 0.50);
+	}
+
+	public double getBlitMillisP90(){
+		return percentile(blitNanos, blits, 0.90);
+	}
+
+	public double getBlitMillisP99(){
+		return percentile(blitNanos, blits, 0.99);
+	}
+
+	public synchronized double getPixelsPerSecond(){
+		return lastPixelsPerSecond;
+	}
+
+	public synchronized double getIterationsPerSecond(){
+		return lastIterationsPerSecond;
+	}
+
+	public synchronized long getEscapedPixels(){
+		return lastEscaped;
+	}
+
+	public synchronized long getInteriorPixels(){
+		return lastInterior;
+	}
+
+	public synchronized long[] getEscapeHistogram(){
+		return lastHistogram.clone();
+
+		//Bucket 0 is escape count 0, and bucket b is counts from 2^(b-1) up to 2^b - 1.
+	}
+
+	public synchronized void reset(){
+		renders = 0;
+		blits = 0;
+		totalPixels = 0;
+		totalIterations = 0;
+		lastPixelsPerSecond = 0.0;
+		lastIterationsPerSecond = 0.0;
+		lastEscaped = 0;
+		lastInterior = 0;
+		Arrays.fill(lastHistogram, 0);
+	}
+}
@@ -0,0 +1,52 @@
+public interface RenderMetricsMBean {
+
+	/*
+	 * The attributes RenderMetrics shows over JMX, for example in JConsole or VisualVM under FractalViewer.
+	 * Times are in milliseconds. The percentiles are over the last RenderMetrics.WINDOW renders (or paints, for
+	 * the blit times), and the pixel counts, rates and histogram are for the last render.
+	 */
+
+	long getRenders();
+
+	long getTotalPixels();
+
+	long getTotalIterations();
+
+	double getLastRenderMillis();
+
+	double getRenderMillisP50();
+
+	double getRenderMillisP90();
+
+	double getRenderMillisP99();
+
+	double getIterateMillisP50();
+
+	double getIterateMillisP90();
+
+	double getIterateMillisP99();
+
+	double getColourMillisP50();
+
+	double getColourMillisP90();
+
+	double getColourMillisP99();
+
+	double getBlitMillisP50();
+
+	double getBlitMillisP90();
+
+	double getBlitMillisP99();
+
+	double getPixelsPerSecond();
+
+	double getIterationsPerSecond();
+
+	long getEscapedPixels();
+
+	long getInteriorPixels();
+
+	long[] getEscapeHistogram();
+
+	void reset();
+}
@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class RenderScheduler {
+	public static final int ZOOM = 0;
+	public static final int PAN = 1;
+	public static final int JULIA = 2;
+	//Kinds of speculative render, most likely to be needed first.
+
+	private static final int IDLEWAIT = 20;
+	//How long in milliseconds to wait before checking again whether the panels have finished rendering.
+
+	private final RenderEngine engine;
+	private final PriorityBlockingQueue<Prefetch> queue = new PriorityBlockingQueue<Prefetch>();
+	private final List<BackgroundRenderer> renderers = new CopyOnWriteArrayList<BackgroundRenderer>();
+
+	private AtomicBoolean generation = new AtomicBoolean(false);
+	private long sequence = 0;
+	private volatile long prefetched = 0;
+	private volatile long dropped = 0;
+
+	/*
+	 * Uses the time the viewer would otherwise sit idle to render the views the user is likely to go to next, so
+	 * that when they get there the image is built from the TileCache instead of starting from nothing. There are
+	 * three kinds of guess, in order of priority:
+	 *
+	 *   ZOOM   the area inside the rubber band while it is still being dragged
+	 *   PAN    the views half a screen away in each direction from the view just finished
+	 *   JULIA  the Julia sets for the constants one pixel away from the current one, while it follows the mouse
+	 *
+	 * The guesses are rendered one at a time by a single low priority thread, which only starts one once every
+	 * BackgroundRenderer it has been given is idle, and renders it on the shared RenderEngine through the
+	 * TileCache. The views the user actually asks for always come first: as soon as a BackgroundRenderer is given
+	 * a new view every guess is thrown away, and the one being rendered is cancelled within the time of a tile.
+	 * TileCache renders the tiles of a view from the middle outwards and keeps each batch as it finishes, so a
+	 * guess that is cancelled part way through still leaves the middle of the view cached.
+	 *
+	 * Only views the TileCache can cache are guessed at, so nothing is prefetched past the deep zoom limit.
+	 */
+
+	public RenderScheduler(RenderEngine engine){
+		this.engine = engine;
+
+		Thread thread = new BackgroundRenderer.DaemonThreadFactory().newThread(new Worker());
+		thread.setName("render-scheduler");
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	public void addRenderer(BackgroundRenderer renderer){
+		renderers.add(renderer);
+		renderer.setScheduler(this);
+
+		//Guesses wait for this renderer to be idle, and any new view it is given cancels them.
+	}
+
+	public synchronized void cancelSpeculation(){
+		generation.set(true);
+		generation = new AtomicBoolean(false);
+		dropped += queue.size();
+		queue.clear();
+
+		//Called whenever the user does something, since the guesses were made for the view they have just left.
+	}
+
+	public synchronized void prefetch(int kind, TileCache cache, List<FractalView> views){
+		for (FractalView view : views){
+			if (cache.canCache(view) == true){
+				queue.add(new Prefetch(kind, sequence++, cache, view, generation));
+			}
+		}
+
+		//Adds to the guesses already waiting. Views of the same kind are rendered in the order given.
+	}
+
+	public synchronized void prefetchInstead(int kind, TileCache cache, FractalView view){
+		cancelSpeculation();
+
+		List<FractalView> views = new ArrayList<FractalView>();
+		views.add(view);
+		prefetch(kind, cache, views);
+
+		//Replaces every guess with this one, used for the rubber band which changes with every mouse movement.
+	}
+
+	public static List<FractalView> panNeighbours(FractalView view){
+		List<FractalView> views = new ArrayList<FractalView>();
+		int[][] offsets = {{view.width / 2, 0}, {-view.width / 2, 0}, {0, view.height / 2}, {0, -view.height / 2}};
+
+		for (int[] offset : offsets){
+			if (view.precise != null){
+				views.add(FractalView.mandelbrot(view.precise.pan(offset[0], offset[1], view.width, view.height),
+						view.width, view.height, view.numberOfIterations));
+			} else {
+				double realShift = offset[0] * view.getXScale();
+				double imagShift = offset[1] * view.getYScale();
+				views.add(new FractalView(view.type, view.realAxisStart + realShift, view.realAxisEnd + realShift, view.imagAxisStart + imagShift,
+						view.imagAxisEnd + imagShift, view.width, view.height, view.numberOfIterations, view.juliaReal, view.juliaImag));
+			}
+		}
+
+		return views;
+
+		/*
+		 * The views half a screen to the right, left, below and above, moved by a whole number of pixels the same
+		 * way PanDragListener moves the view, so their tiles line up with the tiles of the view itself.
+		 */
+	}
+
+	public long getPrefetched(){
+		return prefetched;
+	}
+
+	public synchronized long getDropped(){
+		return dropped;
+
+		//Guesses thrown away before they were started because the user did something else.
+	}
+
+	private boolean renderersIdle(){
+		for (BackgroundRenderer renderer : renderers){
+			if (renderer.isIdle() == false){
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	class Worker implements Runnable {
+
+		public void run(){
+			try {
+				while (true){
+					Prefetch next = queue.take();
+
+					while (next.cancelled.get() == false && renderersIdle() == false){
+						Thread.sleep(IDLEWAIT);
+					}
+
+					if (next.cancelled.get() == true || next.cache.covers(next.view) == true){
+						continue;
+					}
+
+					if (next.cache.render(engine, new IterationMap(next.view), next.cancelled, new RenderStatistics()) == true){
+						prefetched++;
+					}
+				}
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+
+			//Only this thread changes prefetched, so it does not need to be atomic.
+		}
+	}
+
+	static class Prefetch implements Comparable<Prefetch> {
+		final int kind;
+		final long sequence;
+		final TileCache cache;
+		final FractalView view;
+		final AtomicBoolean cancelled;
+
+		public Prefetch(int kind, long sequence, TileCache cache, FractalView view, AtomicBoolean cancelled){
+			this.kind = kind;
+			this.sequence = sequence;
+			this.cache = cache;
+			this.view = view;
+			this.cancelled = cancelled;
+		}
+
+		public int compareTo(Prefetch other){
+			if (kind != other.kind){
+				return Integer.compare(kind, other.kind);
+			}
+
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,148 @@
+import java.util.concurrent.atomic.LongAdder;
+
+public class RenderStatistics {
+	private final LongAdder pixels = new LongAdder();
+	private final LongAdder iteratedPixels = new LongAdder();
+	private final LongAdder settledByBulbTest = new LongAdder();
+	private final LongAdder settledByCycle = new LongAdder();
+	private final LongAdder iterations = new LongAdder();
+	private final LongAdder iterateNanos = new LongAdder();
+	private final LongAdder colourNanos = new LongAdder();
+
+	public static final int HISTOGRAMBUCKETS = 32;
+	//Bucket 0 holds escape count 0, and bucket b holds counts from 2^(b-1) up to 2^b - 1.
+
+	private long renderNanos = 0;
+	private long escapedPixels = 0;
+	private long interiorPixels = 0;
+	private final long[] escapeHistogram = new long[HISTOGRAMBUCKETS];
+	//Only changed by the thread that called RenderEngine.render, once all the tiles are done.
+
+	/*
+	 * Counters for a single render. Tiles are rendered on many threads at once so LongAdders are used,
+	 * and each tile adds its totals once when it finishes rather than once per pixel.
+	 *
+	 * The times are kept per stage. renderNanos is the wall time of the whole render. Iterating and coloring
+	 * happen tile by tile on every thread at once, so they have no wall time of their own: iterateNanos and
+	 * colourNanos are the time spent in each, added up over every thread. Once the tiles are done the escape
+	 * counts of the rendered pixels are sorted into escaped and interior, and the escaped ones into a histogram
+	 * with a bucket for each power of two. None of this allocates anything.
+	 */
+
+	public void addTile(int tilePixels, PixelCalculator calculator){
+		addTile(tilePixels, tilePixels, calculator);
+	}
+
+	public void addTile(int tilePixels, int tileIteratedPixels, PixelCalculator calculator){
+		pixels.add(tilePixels);
+		iteratedPixels.add(tileIteratedPixels);
+		settledByBulbTest.add(calculator.getSettledByBulbTest());
+		settledByCycle.add(calculator.getSettledByCycle());
+	}
+
+	public void addIterations(long tileIterations){
+		iterations.add(tileIterations);
+	}
+
+	public void addIterateTime(long nanos){
+		iterateNanos.add(nanos);
+	}
+
+	public void addColourTime(long nanos){
+		colourNanos.add(nanos);
+	}
+
+	public void addRenderTime(long nanos){
+		renderNanos += nanos;
+	}
+
+	public void countPixels(IterationMap map, int xFrom, int yFrom, int xTo, int yTo){
+		int[] counts = map.getCounts();
+		int width = map.view.width;
+		int inside = map.view.numberOfIterations;
+
+		for (int y = yFrom; y < yTo; y++){
+			for (int i = y * width + xFrom; i < y * width + xTo; i++){
+				if (counts[i] == inside){
+					interiorPixels ++;
+				} else {
+					escapedPixels ++;
+					escapeHistogram[bucketOf(counts[i])] ++;
+				}
+			}
+		}
+
+		//Adds the rendered region of the map to the escaped and interior counts and the histogram.
+	}
+
+	public static int bucketOf(int count){
+		return 32 - Integer.numberOfLeadingZeros(count);
+	}
+
+	public long getPixels(){
+		return pixels.sum();
+	}
+
+	public long getIteratedPixels(){
+		return iteratedPixels.sum();
+
+		//Pixels that were actually run through the calculator. Less than getPixels when rectangles were filled by subdivision.
+	}
+
+	public long getSettledByBulbTest(){
+		return settledByBulbTest.sum();
+	}
+
+	public long getSettledByCycle(){
+		return settledByCycle.sum();
+	}
+
+	public long getSettledEarly(){
+		return getSettledByBulbTest() + getSettledByCycle();
+
+		//Total number of pixels found to be inside the set without running every iteration.
+	}
+
+	public long getIterations(){
+		return iterations.sum();
+
+		//Sum of the escape counts of every pixel that was calculated, which is roughly the number of iterations done.
+	}
+
+	public long getIterateNanos(){
+		return iterateNanos.sum();
+	}
+
+	public long getColourNanos(){
+		return colourNanos.sum();
+	}
+
+	public long getRenderNanos(){
+		return renderNanos;
+	}
+
+	public double getPixelsPerSecond(){
+		return (renderNanos == 0) ? 0.0 : getPixels() * 1e9 / renderNanos;
+	}
+
+	public double getIterationsPerSecond(){
+		return (renderNanos == 0) ? 0.0 : getIterations() * 1e9 / renderNanos;
+	}
+
+	public long getEscapedPixels(){
+		return escapedPixels;
+	}
+
+	public long getInteriorPixels(){
+		return interiorPixels;
+	}
+
+	public long getEscapeHistogram(int bucket){
+		return escapeHistogram[bucket];
+	}
+
+	public String toString(){
+		return String.format("%d pixels, %d iterated, %d settled by bulb test, %d settled by cycle detection, %d iterations in %.1f ms",
+				getPixels(), getIteratedPixels(), getSettledByBulbTest(), getSettledByCycle(), getIterations(), renderNanos / 1e6);
+	}
+}
@@ -0,0 +1,270 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class RenderWorker {
+	public static final int MAGIC = 0x46525731; //"FRW1"
+	public static final int DEFAULTPORT = 9090;
+
+	private final RenderEngine engine;
+
+	/*
+	 * A worker process for RenderCoordinator. It listens on a TCP port, and for every connection reads jobs, each
+	 * a rectangle of a view, renders their iteration data with its own RenderEngine and sends it back. A worker
+	 * holds no state between jobs, so the coordinator can send any job to any worker, and send it again somewhere
+	 * else if this worker is slow or disappears.
+	 *
+	 * The protocol is plain DataOutputStream values. Both ends first send MAGIC so a mismatched version is caught
+	 * straight away. A job is its id, the whole view (with its precise bounds as decimal strings if it has them)
+	 * and the first row and number of rows of the band to render. The reply is the id, then the counts and
+	 * fractions of every pixel (as IterationMap.writeTo lays them out) compressed with Deflater. Neighbouring
+	 * pixels mostly have the same count, so this is several times smaller than the raw 8 bytes a pixel. A job that
+	 * fails is answered with its id, -1 and the error message.
+	 *
+	 * Usage:
+	 *   java -cp out RenderWorker --port 9090 --threads 4
+	 */
+
+	public RenderWorker(RenderEngine engine){
+		this.engine = engine;
+	}
+
+	public void serve(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port)){
+			while (true){
+				Socket socket = server.accept();
+				Thread connection = new BackgroundRenderer.DaemonThreadFactory().newThread(new Connection(socket));
+				connection.setName("render-worker-" + socket.getRemoteSocketAddress());
+				connection.start();
+			}
+		}
+	}
+
+	class Connection implements Runnable {
+		private final Socket socket;
+
+		public Connection(Socket socket){
+			this.socket = socket;
+		}
+
+		public void run(){
+			try (Socket s = socket){
+				s.setTcpNoDelay(true);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+
+				out.writeInt(MAGIC);
+				out.flush();
+				if (in.readInt() != MAGIC){
+					return; //Not a RenderCoordinator of this version.
+				}
+
+				FractalView lastView = null;
+
+				while (true){
+					int id;
+					FractalView view;
+					int firstRow;
+					int rows;
+
+					try {
+						id = in.readInt();
+					} catch (EOFException e){
+						return; //The coordinator has finished with this worker.
+					}
+
+					view = readView(in);
+					firstRow = in.readInt();
+					rows = in.readInt();
+
+					if (sameView(lastView, view) == true){
+						view = lastView; //Keeps the reference orbit of a deep zoom for the next band.
+					}
+
+					lastView = view;
+
+					try {
+						IterationMap map = new IterationMap(view.band(firstRow, rows));
+						engine.render(map, (int[]) null, new AtomicBoolean(false), new RenderStatistics());
+						out.writeInt(id);
+						writeMap(out, map);
+					} catch (RuntimeException e){
+						out.writeInt(id);
+						out.writeInt(-1);
+						out.writeUTF(String.valueOf(e));
+					}
+
+					out.flush();
+				}
+			} catch (IOException e){
+				System.err.println("Lost the connection to the coordinator: " + e.getMessage());
+			}
+		}
+	}
+
+	public static void writeJob(DataOutputStream out, int id, FractalView view, int firstRow, int rows) throws IOException {
+		out.writeInt(id);
+		out.writeInt(view.type.ordinal());
+		out.writeDouble(view.realAxisStart);
+		out.writeDouble(view.realAxisEnd);
+		out.writeDouble(view.imagAxisStart);
+		out.writeDouble(view.imagAxisEnd);
+		out.writeBoolean(view.precise != null);
+
+		if (view.precise != null){
+			out.writeUTF(view.precise.realAxisStart.toString());
+			out.writeUTF(view.precise.realAxisEnd.toString());
+			out.writeUTF(view.precise.imagAxisStart.toString());
+			out.writeUTF(view.precise.imagAxisEnd.toString());
+		}
+
+		out.writeDouble(view.juliaReal);
+		out.writeDouble(view.juliaImag);
+		out.writeInt(view.width);
+		out.writeInt(view.height);
+		out.writeInt(view.numberOfIterations);
+		out.writeInt(firstRow);
+		out.writeInt(rows);
+
+		/*
+		 * The whole view is sent rather than the band, and the worker cuts the band out itself, so its pixels are
+		 * exactly the ones HeadlessRenderer would work out for the same band.
+		 */
+	}
+
+	static FractalView readView(DataInputStream in) throws IOException {
+		int type = in.readInt();
+		double realAxisStart = in.readDouble();
+		double realAxisEnd = in.readDouble();
+		double imagAxisStart = in.readDouble();
+		double imagAxisEnd = in.readDouble();
+		PreciseBounds precise = null;
+
+		if (in.readBoolean() == true){
+			try {
+				precise = new PreciseBounds(new BigDecimal(in.readUTF()), new BigDecimal(in.readUTF()),
+						new BigDecimal(in.readUTF()), new BigDecimal(in.readUTF()));
+			} catch (NumberFormatException e){
+				throw new IOException("Not a valid render job", e);
+			}
+		}
+
+		double juliaReal = in.readDouble();
+		double juliaImag = in.readDouble();
+		int width = in.readInt();
+		int height = in.readInt();
+		int iterations = in.readInt();
+
+		if (type < 0 || type >= FractalType.values().length || width < 1 || height < 1 || iterations < 1){
+			throw new IOException("Not a valid render job");
+		}
+
+		return new FractalView(FractalType.values()[type], realAxisStart, realAxisEnd, imagAxisStart, imagAxisEnd,
+				width, height, iterations, juliaReal, juliaImag, precise);
+
+		//The job id has already been read, and the band follows.
+	}
+
+	static boolean sameView(FractalView a, FractalView b){
+		return a != null && a.type == b.type && a.realAxisStart == b.realAxisStart && a.realAxisEnd == b.realAxisEnd
+				&& a.imagAxisStart == b.imagAxisStart && a.imagAxisEnd == b.imagAxisEnd && a.width == b.width
+				&& a.height == b.height && a.numberOfIterations == b.numberOfIterations && a.juliaReal == b.juliaReal
+				&& a.juliaImag == b.juliaImag && (a.precise == null ? b.precise == null : a.precise.equals(b.precise));
+	}
+
+	static void writeMap(DataOutputStream out, IterationMap map) throws IOException {
+		ByteBuffer raw = ByteBuffer.allocate(map.view.width * map.view.height * 8);
+		map.writeTo(raw);
+
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(raw.array());
+		deflater.finish();
+
+		byte[] compressed = new byte[raw.capacity() + 64];
+		int length = 0;
+		while (deflater.finished() == false){
+			if (length == compressed.length){
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+
+			length += deflater.deflate(compressed, length, compressed.length - length);
+		}
+
+		deflater.end();
+		out.writeInt(raw.capacity());
+		out.writeInt(length);
+		out.write(compressed, 0, length);
+	}
+
+	static void readMap(DataInputStream in, IterationMap map) throws IOException {
+		int rawLength = in.readInt();
+		if (rawLength == -1){
+			throw new IOException("The worker could not render the job: " + in.readUTF());
+		}
+
+		int length = in.readInt();
+		if (rawLength != map.view.width * map.view.height * 8 || length < 0 || length > rawLength + (rawLength >> 4) + 1024){
+			throw new IOException("The worker sent data of the wrong size");
+		}
+
+		byte[] compressed = new byte[length];
+		in.readFully(compressed);
+
+		Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		byte[] raw = new byte[rawLength];
+
+		try {
+			if (inflater.inflate(raw) != rawLength){
+				throw new IOException("The worker sent incomplete data");
+			}
+		} catch (DataFormatException e){
+			throw new IOException("The worker sent damaged data", e);
+		} finally {
+			inflater.end();
+		}
+
+		map.readFrom(ByteBuffer.wrap(raw));
+
+		//Reads a reply to a job (after its id) into the map for that job's view.
+	}
+
+	public static void main(String[] args){
+		int port = DEFAULTPORT;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		try {
+			for (int i = 0; i < args.length; i += 2){
+				String value = (i + 1 < args.length) ? args[i + 1] : "";
+
+				switch (args[i]){
+					case "--port": port = Integer.parseInt(value); break;
+					case "--threads": threads = Integer.parseInt(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			System.out.printf("Render worker listening on port %d with %d threads%n", port, threads);
+			new RenderWorker(new RenderEngine(threads)).serve(port);
+		} catch (IOException e){
+			System.err.println("The worker could not listen on port " + port + ": " + e.getMessage());
+			System.exit(1);
+		} catch (RuntimeException e){
+			System.err.println(e.getMessage());
+			System.err.println("Usage: RenderWorker [--port N] [--threads N]");
+			System.exit(2);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+public class SubdivisionRenderer {
+	private static final int MINIMUMSIZE = 4;
+	//Rectangles narrower or shorter than this are simply calculated pixel by pixel.
+
+	private final FractalView view;
+	private final PixelCalculator calculator;
+	private final boolean strict;
+
+	private int xFrom;
+	private int yFrom;
+	private int tileWidth;
+	private int[] iterations;
+	private double[] smooth;
+	private boolean[] calculated;
+	private int iteratedPixels;
+	private long iterationsDone;
+
+	/*
+	 * Renders a tile using Mariani-Silver subdivision. Because the Mandelbrot set has no holes, a
+	 * rectangle whose border is entirely one escape count is very likely to be that escape count all the
+	 * way through. The border of a rectangle is calculated first. If every
+	 * border pixel has the same escape count the inside is filled without iterating, otherwise the rectangle
+	 * is split in two along its longer side and each half is tried again.
+	 * 
+	 * Filled rectangles inside the set are simply black. Filled rectangles of escaped points are given smooth
+	 * values interpolated across each row from the border pixels, so the smooth coloring carries on without
+	 * visible bands. In strict mode a few points inside each rectangle are calculated before it is filled,
+	 * and the rectangle is split instead if any of them do not match the border. RenderEngine only uses it for
+	 * Mandelbrot views, since a Julia set whose constant is outside the Mandelbrot set is dust and a rectangle can
+	 * hide parts of it.
+	 */
+
+	public SubdivisionRenderer(FractalView view, PixelCalculator calculator, boolean strict){
+		this.view = view;
+		this.calculator = calculator;
+		this.strict = strict;
+	}
+
+	public int renderTile(IterationMap map, int xFrom, int yFrom, int xTo, int yTo){
+		this.xFrom = xFrom;
+		this.yFrom = yFrom;
+		this.tileWidth = xTo - xFrom;
+
+		int tileHeight = yTo - yFrom;
+		iterations = new int[tileWidth * tileHeight];
+		smooth = new double[tileWidth * tileHeight];
+		calculated = new boolean[tileWidth * tileHeight];
+		iteratedPixels = 0;
+		iterationsDone = 0;
+
+		subdivide(0, 0, tileWidth - 1, tileHeight - 1);
+
+		for (int y = 0; y < tileHeight; y++){
+			for (int x = 0; x < tileWidth; x++){
+				int i = y * tileWidth + x;
+
+				if (iterations[i] == view.numberOfIterations){
+					map.setInside(xFrom + x, yFrom + y);
+				} else {
+					map.setSmooth(xFrom + x, yFrom + y, iterations[i], smooth[i]);
+				}
+			}
+		}
+
+		return iteratedPixels;
+
+		//Stores the tile in the map and returns how many pixels were actually iterated. The rest were filled in.
+	}
+
+	public long getIterations(){
+		return iterationsDone;
+
+		//Sum of the escape counts of the pixels iterated in the last tile. Filled in pixels are not counted.
+	}
+
+	private void subdivide(int left, int top, int right, int bottom){
+		if (right - left < MINIMUMSIZE || bottom - top < MINIMUMSIZE){
+			for (int y = top; y <= bottom; y++){
+				for (int x = left; x <= right; x++){
+					calculate(x, y);
+				}
+			}
+			return;
+		}
+
+		int border = calculate(left, top);
+		boolean uniform = true;
+
+		for (int x = left; x <= right; x++){
+			uniform &= calculate(x, top) == border;
+			uniform &= calculate(x, bottom) == border;
+		}
+
+		for (int y = top + 1; y < bottom; y++){
+			uniform &= calculate(left, y) == border;
+			uniform &= calculate(right, y) == border;
+		}
+
+		if (uniform == true && (strict == false || spotCheck(left, top, right, bottom, border))){
+			fill(left, top, right, bottom, border);
+		} else if (right - left >= bottom - top){
+			int middle = (left + right) >>> 1;
+			subdivide(left, top, middle, bottom);
+			subdivide(middle, top, right, bottom);
+		} else {
+			int middle = (top + bottom) >>> 1;
+			subdivide(left, top, right, middle);
+			subdivide(left, middle, right, bottom);
+		}
+
+		//The two halves share the middle row or column, which is only calculated once.
+	}
+
+	private boolean spotCheck(int left, int top, int right, int bottom, int border){
+		int middleX = (left + right) >>> 1;
+		int middleY = (top + bottom) >>> 1;
+		int quarterX = (right - left) / 4;
+		int quarterY = (bottom - top) / 4;
+
+		return calculate(middleX, middleY) == border
+				&& calculate(middleX - quarterX, middleY - quarterY) == border
+				&& calculate(middleX + quarterX, middleY - quarterY) == border
+				&& calculate(middleX - quarterX, middleY + quarterY) == border
+				&& calculate(middleX + quarterX, middleY + quarterY) == border;
+
+		//The centre and four points halfway to the corners must all match the border.
+	}
+
+	private void fill(int left, int top, int right, int bottom, int border){
+		for (int y = top + 1; y < bottom; y++){
+			double leftSmooth = smooth[y * tileWidth + left];
+			double rightSmooth = smooth[y * tileWidth + right];
+			double perPixel = (rightSmooth - leftSmooth) / (right - left);
+
+			for (int x = left + 1; x < right; x++){
+				int i = y * tileWidth + x;
+
+				if (calculated[i] == false){
+					iterations[i] = border;
+					smooth[i] = leftSmooth + (perPixel * (x - left));
+				}
+			}
+		}
+
+		//Points checked by spotCheck keep their calculated values, everything else is filled in.
+	}
+
+	private int calculate(int x, int y){
+		int i = y * tileWidth + x;
+
+		if (calculated[i] == false){
+			int iterTaken = calculator.calculatePixel(xFrom + x, yFrom + y);
+			iterations[i] = iterTaken;
+
+			if (iterTaken != view.numberOfIterations){
+				smooth[i] = Palette.smoothValue(iterTaken, calculator.getLastModulusSquared());
+			}
+
+			calculated[i] = true;
+			iteratedPixels ++;
+			iterationsDone += iterTaken;
+		}
+
+		return iterations[i];
+
+		//Returns the escape count of a pixel in the tile, only iterating it the first time it is asked for.
+	}
+}
@@ -0,0 +1,108 @@
+public class Symmetry {
+	private final FractalView view;
+	private final int[] mirrorRows;
+	private final int[] mirrorColumns;
+	private final int mirroredPixels;
+
+	/*
+	 * The Mandelbrot set is symmetric about the real axis: c and its conjugate always take the same number of
+	 * iterations to escape. Every Julia set is symmetric under z -> -z, as both square to the same value. So when
+	 * a view contains both a point and its mirror image, only one of them needs to be iterated.
+	 *
+	 * A pixel is only treated as the mirror of another if the number it samples is exactly the negative of the
+	 * other pixel's number, bit for bit, using the same translation as DoublePixelCalculator. The kernels do the
+	 * same arithmetic on both, so the mirrored pixel gets exactly the count and |z|^2 it would have got if it had
+	 * been iterated itself. Rows or columns with no exact partner are simply iterated as usual.
+	 */
+
+	private Symmetry(FractalView view, int[] mirrorRows, int[] mirrorColumns){
+		this.view = view;
+		this.mirrorRows = mirrorRows;
+		this.mirrorColumns = mirrorColumns;
+
+		int count = 0;
+		for (int y = 0; y < view.height; y++){
+			for (int x = 0; x < view.width; x++){
+				if (partner(x, y) >= 0){
+					count ++;
+				}
+			}
+		}
+
+		this.mirroredPixels = count;
+	}
+
+	public static Symmetry forView(FractalView view){
+		if (view.isDeepZoom() == true){
+			return null; //Deep zooms are calculated relative to a reference orbit, which has no mirror image.
+		}
+
+		int[] mirrorRows = mirrors(view.getWhole().imagAxisEnd, view.getYScale(), view.getFirstRow(), view.height);
+		int[] mirrorColumns = null;
+
+		if (view.type == FractalType.JULIA){
+			mirrorColumns = mirrors(view.realAxisStart, view.getXScale(), 0, view.width);
+		}
+
+		Symmetry symmetry = new Symmetry(view, mirrorRows, mirrorColumns);
+		return (symmetry.mirroredPixels == 0) ? null : symmetry;
+
+		//Returns null if no pixel in the view has a mirror image in the view.
+	}
+
+	private static int[] mirrors(double start, double scale, int offset, int pixels){
+		int[] mirror = new int[pixels];
+
+		for (int i = 0; i < pixels; i++){
+			double value = (scale * (offset + i)) + start;
+			int guess = (int) Math.rint((-value - start) / scale) - offset;
+			mirror[i] = -1;
+
+			for (int j = Math.max(0, guess - 1); j <= Math.min(pixels - 1, guess + 1); j++){
+				if ((scale * (offset + j)) + start == -value){
+					mirror[i] = j;
+				}
+			}
+		}
+
+		return mirror;
+
+		//mirror[i] is the pixel that samples exactly the negative of pixel i, or -1 if there is none. offset is where pixel 0 is along the whole view, for bands.
+	}
+
+	public int partner(int x, int y){
+		int mirrorY = mirrorRows[y];
+		int mirrorX = (mirrorColumns == null) ? x : mirrorColumns[x];
+
+		if (mirrorY < 0 || mirrorX < 0){
+			return -1;
+		}
+
+		int index = y * view.width + x;
+		int partnerIndex = mirrorY * view.width + mirrorX;
+		return (partnerIndex < index) ? partnerIndex : -1;
+
+		/*
+		 * Returns the index of the pixel this one is copied from, or -1 if this pixel has to be iterated. Of each
+		 * pair the pixel that comes first is iterated and the later one copied, so the copy always has a source.
+		 */
+	}
+
+	public int getMirroredPixels(){
+		return mirroredPixels;
+	}
+
+	public void copyMirrored(IterationMap map){
+		for (int y = 0; y < view.height; y++){
+			for (int x = 0; x < view.width; x++){
+				int from = partner(x, y);
+
+				if (from >= 0){
+					map.copyPixel(from, y * view.width + x);
+				}
+			}
+		}
+
+		//Fills in every skipped pixel once all the pixels it mirrors have been iterated.
+	}
+}
@@ -0,0 +1,231 @@
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+public class ThumbnailCache {
+	public static final int WIDTH = 64;
+	public static final int HEIGHT = 51;
+	public static final int DEFAULTITERATIONS = 64;
+	public static final int DEFAULTMEMORYENTRIES = 512;
+	//64x51 keeps the 4 by 3.2 shape of the Julia panel. 512 thumbnails take about 6.5MB.
+
+	private final File directory;
+	private final int numberOfIterations;
+	private final ThumbnailListener listener;
+	private final RenderEngine engine = new RenderEngine(1);
+
+	private final LinkedHashMap<ThumbnailKey, BufferedImage> memory;
+	private final HashSet<ThumbnailKey> queued = new HashSet<ThumbnailKey>();
+	private final HashSet<ThumbnailKey> front = new HashSet<ThumbnailKey>();
+	//Keys waiting to be loaded, and those of them that have also been put at the front of the queue.
+	private final LinkedBlockingDeque<ThumbnailKey> requests = new LinkedBlockingDeque<ThumbnailKey>();
+
+	private volatile long hits = 0;
+	private volatile long diskReads = 0;
+	private volatile long rendered = 0;
+
+	/*
+	 * Small previews of Julia sets, so a list of favourites can be browsed without rendering each one in full.
+	 * Thumbnails are rendered at a low number of iterations on one background thread with its own single thread
+	 * RenderEngine, so they never hold up the main panels.
+	 *
+	 * Two levels of cache are kept. In memory there is a least recently used map holding at most a fixed number
+	 * of images, and on disk every thumbnail ever rendered is saved as a PNG in the thumbnails directory, named
+	 * after the exact bits of the constant and the number of iterations. A thumbnail is rendered only if it is in
+	 * neither.
+	 *
+	 * Nothing is done until a thumbnail is asked for. get is called as each entry of the list is painted, so
+	 * only the entries on screen ask, and they go to the front of the queue. prefetch puts the rest at the back,
+	 * so the whole list is filled in once the visible ones are done. A key already waiting at the back is not
+	 * searched for and moved, which would mean a scan of the whole queue for every cell painted. It is put at the
+	 * front as well, and whichever copy the worker reaches second is skipped. Whenever a thumbnail becomes ready the
+	 * listener is told on the Event Dispatch Thread so the list can be repainted.
+	 */
+
+	public interface ThumbnailListener {
+		void thumbnailReady(Complex constant);
+	}
+
+	public ThumbnailCache(File directory, int numberOfIterations, final int memoryEntries, ThumbnailListener listener){
+		this.directory = directory;
+		this.numberOfIterations = numberOfIterations;
+		this.listener = listener;
+		this.memory = new LinkedHashMap<ThumbnailKey, BufferedImage>(16, 0.75f, true){
+			protected boolean removeEldestEntry(Map.Entry<ThumbnailKey, BufferedImage> eldest){
+				return size() > memoryEntries;
+			}
+		};
+
+		Thread worker = new BackgroundRenderer.DaemonThreadFactory().newThread(new Worker());
+		worker.setPriority(Thread.MIN_PRIORITY);
+		worker.start();
+	}
+
+	public BufferedImage get(Complex constant){
+		ThumbnailKey key = new ThumbnailKey(constant.getRealNum(), constant.getImagNum());
+
+		synchronized (this){
+			BufferedImage image = memory.get(key);
+			if (image != null){
+				hits++;
+				return image;
+			}
+
+			queued.add(key);
+
+			if (front.add(key) == true){
+				requests.addFirst(key);
+			}
+
+			//New requests, and ones waiting at the back, go to the front once. Each painted cell costs the same however long the queue is.
+		}
+
+		return null;
+
+		//Returns the thumbnail if it is in memory. Otherwise returns null and queues it ahead of everything else.
+	}
+
+	public synchronized void prefetch(List<Complex> constants){
+		for (Complex constant : constants){
+			ThumbnailKey key = new ThumbnailKey(constant.getRealNum(), constant.getImagNum());
+
+			if (memory.containsKey(key) == false && queued.add(key) == true){
+				requests.addLast(key);
+			}
+		}
+
+		//Queues every thumbnail not already in memory behind the ones that have been asked for.
+	}
+
+	public long getHits(){
+		return hits;
+	}
+
+	public long getDiskReads(){
+		return diskReads;
+	}
+
+	public long getRendered(){
+		return rendered;
+	}
+
+	class Worker implements Runnable {
+
+		public void run(){
+			while (true){
+				ThumbnailKey key;
+
+				try {
+					key = requests.takeFirst();
+				} catch (InterruptedException e){
+					return;
+				}
+
+				synchronized (ThumbnailCache.this){
+					if (queued.contains(key) == false){
+						continue; //The other copy of a key that was moved to the front, already loaded.
+					}
+				}
+
+				BufferedImage image = null;
+
+				try {
+					image = load(key); //The key stays in queued while it is loaded so it is not queued twice.
+				} catch (RuntimeException e){
+					System.err.println("The thumbnail for " + key.real + " + " + key.imag + "i could not be made: " + e);
+				}
+
+				synchronized (ThumbnailCache.this){
+					if (image != null){
+						memory.put(key, image);
+					}
+
+					queued.remove(key);
+					front.remove(key);
+				}
+
+				if (image == null){
+					continue; //The placeholder stays, and the thumbnail is tried again the next time it is asked for.
+				}
+
+				final Complex constant = new Complex(key.real, key.imag);
+				SwingUtilities.invokeLater(new Runnable(){
+					public void run(){
+						listener.thumbnailReady(constant);
+					}
+				});
+			}
+		}
+	}
+
+	private BufferedImage load(ThumbnailKey key){
+		File file = new File(directory, key.fileName(numberOfIterations));
+
+		if (file.isFile() == true){
+			try {
+				BufferedImage image = ImageIO.read(file);
+				if (image != null && image.getWidth() == WIDTH && image.getHeight() == HEIGHT){
+					diskReads++;
+					return image;
+				}
+			} catch (IOException e){
+				System.err.println("There was a problem reading the thumbnail " + file + ", it will be rendered again");
+			}
+		}
+
+		FractalView view = FractalView.julia(-2.0, 2.0, -1.6, 1.6, WIDTH, HEIGHT, numberOfIterations, key.real, key.imag);
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		engine.render(view, image);
+		rendered++;
+
+		try {
+			if (directory.isDirectory() == true || directory.mkdirs() == true){
+				File temporary = new File(directory, file.getName() + ".tmp");
+				ImageIO.write(image, "png", temporary);
+
+				if (temporary.renameTo(file) == false){
+					temporary.delete();
+				}
+			}
+		} catch (IOException e){
+			System.err.println("There was a problem saving the thumbnail " + file);
+		}
+
+		return image;
+
+		/*
+		 * Reads the thumbnail from disk, or renders it and saves it. It is written to a temporary file first, so a
+		 * crash never leaves a half written thumbnail under the real name. Only called on the worker thread.
+		 */
+	}
+
+	static class ThumbnailKey {
+		final double real;
+		final double imag;
+
+		public ThumbnailKey(double real, double imag){
+			this.real = real;
+			this.imag = imag;
+		}
+
+		public String fileName(int numberOfIterations){
+			return String.format("julia_%016x_%016x_%d.png", Double.doubleToLongBits(real), Double.doubleToLongBits(imag), numberOfIterations);
+		}
+
+		public boolean equals(Object other){
+			return other instanceof ThumbnailKey && Double.doubleToLongBits(((ThumbnailKey) other).real) == Double.doubleToLongBits(real)
+					&& Double.doubleToLongBits(((ThumbnailKey) other).imag) == Double.doubleToLongBits(imag);
+		}
+
+		public int hashCode(){
+			return Double.hashCode(real) * 31 + Double.hashCode(imag);
+		}
+	}
+}
@@ -0,0 +1,491 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class TileCache implements TileCacheMBean {
+	public static final int TILESIZE = 64;
+	public static final long DEFAULTBYTEBUDGET = Long.getLong("tilecache.bytes", 64L << 20);
+	//64MB holds about 2000 tiles, over twenty full screens of the Mandelbrot panel. Set with -Dtilecache.bytes=n
+
+	public static final int LEVELSPEROCTAVE = 1 << 20;
+	public static final int PHASESTEPS = 1000;
+	//How finely the pixel spacing and the position of the pixel grid are snapped, see below.
+
+	private static final double MAXGRIDPIXEL = 1L << 40;
+	private static final long TILEOVERHEAD = 200;
+	//Bytes each tile costs on top of its arrays, for the key, the view and the map entry.
+
+	private final LinkedHashMap<TileKey, IterationMap> tiles = new LinkedHashMap<TileKey, IterationMap>(256, 0.75f, true);
+	private long byteBudget;
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long diskHits = 0;
+
+	private volatile TileStore store;
+	//Tiles kept on disk from earlier sessions, if set.
+
+	/*
+	 * A cache of rendered tiles, so going back to a view that has been seen before (the default view after Reset,
+	 * or a favourite zoom typed in again) is built from memory instead of being iterated again.
+	 *
+	 * Every view is snapped onto a pyramid of tile grids. The level of the pyramid is the pixel spacing rounded to
+	 * one of LEVELSPEROCTAVE steps per doubling, and the grid at each level is anchored at 0 on both axes and
+	 * shifted by the view's position within a pixel, rounded to 1/PHASESTEPS of a pixel. Snapping moves a pixel
+	 * by around a thousandth of a pixel at most across the whole image, which cannot be seen, but means any two views
+	 * with the same pixel spacing whose pixels line up share the same tiles, not just the same view seen twice.
+	 * A pan by a whole number of pixels keeps every tile it still covers.
+	 *
+	 * A tile is keyed by the fractal, the Julia constant, the number of iterations, the level and the grid shift,
+	 * and its x and y within the grid. Its iteration data is kept rather than its colors, so it can be colored
+	 * with any palette. Tiles are kept in least recently used order and the oldest are evicted once the total
+	 * size passes the byte budget.
+	 *
+	 * Views zoomed in past what doubles can place accurately are never cached, since their pixel grid cannot be
+	 * worked out in doubles.
+	 */
+
+	public TileCache(long byteBudget){
+		this.byteBudget = byteBudget;
+	}
+
+	public static TileCache register(String name, long byteBudget){
+		TileCache cache = new TileCache(byteBudget);
+
+		try {
+			ObjectName objectName = new ObjectName("FractalViewer:type=TileCache,name=" + name);
+			if (ManagementFactory.getPlatformMBeanServer().isRegistered(objectName) == false){
+				ManagementFactory.getPlatformMBeanServer().registerMBean(cache, objectName);
+			}
+		} catch (JMException e){
+			System.err.println("Could not register the tile cache for " + name);
+		}
+
+		return cache;
+
+		//The cache still works if it cannot be registered.
+	}
+
+	public void setStore(TileStore store){
+		this.store = store;
+
+		//Tiles missing from memory are looked for on disk before they are iterated, and new tiles are written to it.
+	}
+
+	public boolean canCache(FractalView view){
+		if (view.width < 1 || view.height < 1 || view.isDeepZoom() == true){
+			return false;
+		}
+
+		return Math.abs(view.realAxisStart / view.getXScale()) < MAXGRIDPIXEL && Math.abs(view.imagAxisEnd / view.getYScale()) < MAXGRIDPIXEL;
+
+		//The pixel grid is only worked out in doubles, so it must be accurate to well within a pixel.
+	}
+
+	public boolean covers(FractalView view){
+		if (canCache(view) == false){
+			return false;
+		}
+
+		Grid grid = new Grid(view);
+		TileStore disk = store;
+
+		synchronized (this){
+			for (int ty = 0; ty < grid.tilesDown; ty++){
+				for (int tx = 0; tx < grid.tilesAcross; tx++){
+					TileKey key = grid.key(tx, ty);
+
+					if (tiles.containsKey(key) == false && (disk == null || disk.contains(key) == false)){
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+
+		//True if every tile of the view is cached in memory or on disk, so it can be shown without preview passes. Not counted as hits.
+	}
+
+	public boolean render(RenderEngine engine, IterationMap map, AtomicBoolean cancelled, RenderStatistics statistics){
+		long start = System.nanoTime();
+		FractalView view = map.view;
+		Grid grid = new Grid(view);
+		IterationMap[] found = new IterationMap[grid.tilesAcross * grid.tilesDown];
+		List<IterationMap> missing = new ArrayList<IterationMap>();
+		List<TileKey> missingKeys = new ArrayList<TileKey>();
+		List<Integer> missingAt = new ArrayList<Integer>();
+
+		synchronized (this){
+			for (int at : grid.centreOutward()){
+				int tx = at % grid.tilesAcross;
+				int ty = at / grid.tilesAcross;
+				TileKey key = grid.key(tx, ty);
+				IterationMap tile = tiles.get(key);
+
+				if (tile != null){
+					hits++;
+				} else {
+					misses++;
+					tile = new IterationMap(grid.tileView(tx, ty));
+					missing.add(tile);
+					missingKeys.add(key);
+					missingAt.add(at);
+				}
+
+				found[at] = tile;
+			}
+		}
+
+		TileStore disk = store;
+		List<IterationMap> loaded = new ArrayList<IterationMap>();
+		List<TileKey> loadedKeys = new ArrayList<TileKey>();
+
+		if (disk != null){
+			for (int i = missing.size() - 1; i >= 0; i--){
+				IterationMap tile = disk.read(missingKeys.get(i), missing.get(i).view);
+
+				if (tile != null){
+					found[missingAt.get(i)] = tile;
+					loaded.add(tile);
+					loadedKeys.add(missingKeys.get(i));
+					missing.remove(i);
+					missingKeys.remove(i);
+					missingAt.remove(i);
+				}
+			}
+		}
+
+		synchronized (this){
+			diskHits += loaded.size();
+			misses -= loaded.size();
+			add(loadedKeys, loaded);
+			evict();
+		}
+
+		if (missing.isEmpty() == false && renderWhole(engine, view, missing.size()) == true){
+			if (engine.render(map, (int[]) null, cancelled, statistics) == false){
+				return false;
+			}
+
+			keepInside(grid, map, missing, missingKeys, missingAt, disk);
+			return true; //The engine has already counted the pixels and the render time.
+		}
+
+		int batch = Math.max(4, engine.getParallelism() * 2);
+
+		for (int from = 0; from < missing.size(); from += batch){
+			List<IterationMap> batchTiles = missing.subList(from, Math.min(missing.size(), from + batch));
+			List<TileKey> batchKeys = missingKeys.subList(from, Math.min(missing.size(), from + batch));
+
+			if (engine.render(batchTiles, cancelled, statistics) == false){
+				return false;
+			}
+
+			if (disk != null){
+				for (int i = 0; i < batchTiles.size(); i++){
+					disk.write(batchKeys.get(i), batchTiles.get(i));
+				}
+			}
+
+			synchronized (this){
+				add(batchKeys, batchTiles);
+				evict();
+			}
+		}
+
+		for (int ty = 0; ty < grid.tilesDown; ty++){
+			for (int tx = 0; tx < grid.tilesAcross; tx++){
+				int x = (int) ((grid.firstTileX + tx) * TILESIZE - grid.originX);
+				int y = (int) ((grid.firstTileY + ty) * TILESIZE - grid.originY);
+				int fromX = Math.max(0, -x);
+				int fromY = Math.max(0, -y);
+				int width = Math.min(TILESIZE, view.width - x) - fromX;
+				int height = Math.min(TILESIZE, view.height - y) - fromY;
+				map.copyRegion(found[ty * grid.tilesAcross + tx], fromX, fromY, x + fromX, y + fromY, width, height);
+			}
+		}
+
+		statistics.countPixels(map, 0, 0, view.width, view.height);
+		statistics.addRenderTime(System.nanoTime() - start);
+		return true;
+
+		/*
+		 * Fills in the map from the cache, reading tiles missing from memory from the TileStore if there is one and
+		 * iterating every tile that is still missing, which is then written to the store as well. The missing tiles are iterated in
+		 * full, including any part that is off the edge of the view, so they can be reused when the view is panned.
+		 * They are iterated nearest the centre of the view first, a few at a time, and each batch is cached as soon as
+		 * it is done, so a render that is cancelled part way through still leaves its finished tiles behind.
+		 * A view that contains its own mirror image and is mostly missing is iterated as a whole view instead, see
+		 * renderWhole, and the tiles inside it are cut out of the result afterwards.
+		 * The cache is not locked while tiles are iterated. If two renders need the same missing tile at once both
+		 * iterate it, which costs time but gives the same result. Returns false if the render was cancelled.
+		 */
+	}
+
+	private static boolean renderWhole(RenderEngine engine, FractalView view, int missingTiles){
+		if (engine.isSymmetry() == false || engine.isSubdivision(view) == true){
+			return false;
+		}
+
+		Symmetry symmetry = Symmetry.forView(view);
+		if (symmetry == null){
+			return false;
+		}
+
+		long wholeCost = (long) view.width * view.height - symmetry.getMirroredPixels();
+		return wholeCost < (long) missingTiles * TILESIZE * TILESIZE;
+
+		/*
+		 * Symmetry only works on a whole view, since the mirror of a tile is another tile. When a view contains
+		 * its own mirror image and most of it is missing, iterating the whole view and skipping the mirrored pixels
+		 * is cheaper than iterating the missing tiles, which also stick out past the edges of the view.
+		 */
+	}
+
+	private void keepInside(Grid grid, IterationMap map, List<IterationMap> missing, List<TileKey> missingKeys, List<Integer> missingAt, TileStore disk){
+		List<IterationMap> inside = new ArrayList<IterationMap>();
+		List<TileKey> insideKeys = new ArrayList<TileKey>();
+
+		for (int i = 0; i < missing.size(); i++){
+			int tx = missingAt.get(i) % grid.tilesAcross;
+			int ty = missingAt.get(i) / grid.tilesAcross;
+			long x = (grid.firstTileX + tx) * TILESIZE - grid.originX;
+			long y = (grid.firstTileY + ty) * TILESIZE - grid.originY;
+
+			if (x >= 0 && y >= 0 && x + TILESIZE <= map.view.width && y + TILESIZE <= map.view.height){
+				IterationMap tile = missing.get(i);
+				tile.copyRegion(map, (int) x, (int) y, 0, 0, TILESIZE, TILESIZE);
+				inside.add(tile);
+				insideKeys.add(missingKeys.get(i));
+
+				if (disk != null){
+					disk.write(missingKeys.get(i), tile);
+				}
+			}
+		}
+
+		synchronized (this){
+			add(insideKeys, inside);
+			evict();
+		}
+
+		/*
+		 * After a whole view render, the missing tiles that lie completely inside the view are copied out of it and
+		 * cached. The pixels differ from the tile's own only by the snapping to the grid described above. Tiles
+		 * cut off by the edge of the view are left out, since part of them was never iterated.
+		 */
+	}
+
+	private void add(List<TileKey> keys, List<IterationMap> maps){
+		for (int i = 0; i < keys.size(); i++){
+			if (tiles.put(keys.get(i), maps.get(i)) == null){
+				bytes += tileBytes();
+			}
+		}
+	}
+
+	private static long tileBytes(){
+		return (long) TILESIZE * TILESIZE * 8 + TILEOVERHEAD;
+	}
+
+	private void evict(){
+		Iterator<Map.Entry<TileKey, IterationMap>> oldest = tiles.entrySet().iterator();
+
+		while (bytes > byteBudget && oldest.hasNext() == true){
+			oldest.next();
+			oldest.remove();
+			bytes -= tileBytes();
+			evictions++;
+		}
+
+		//The map is in access order, so its iterator starts at the tile used longest ago.
+	}
+
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	public synchronized long getEvictions(){
+		return evictions;
+	}
+
+	public synchronized long getDiskHits(){
+		return diskHits;
+	}
+
+	public synchronized double getHitRate(){
+		long total = hits + diskHits + misses;
+		return (total == 0) ? 0.0 : (double) (hits + diskHits) / total;
+	}
+
+	public synchronized int getTiles(){
+		return tiles.size();
+	}
+
+	public synchronized long getBytes(){
+		return bytes;
+	}
+
+	public synchronized long getByteBudget(){
+		return byteBudget;
+	}
+
+	public synchronized void setByteBudget(long byteBudget){
+		this.byteBudget = Math.max(0, byteBudget);
+		evict();
+	}
+
+	public synchronized void clear(){
+		tiles.clear();
+		bytes = 0;
+	}
+
+	static class Grid {
+		final FractalView view;
+		final int levelX;
+		final int levelY;
+		final int phaseX;
+		final int phaseY;
+		final double xScale;
+		final double yScale;
+		final long originX;
+		final long originY;
+		final long firstTileX;
+		final long firstTileY;
+		final int tilesAcross;
+		final int tilesDown;
+
+		public Grid(FractalView view){
+			this.view = view;
+			this.levelX = level(view.getXScale());
+			this.levelY = level(-view.getYScale());
+			this.xScale = Math.pow(2.0, (double) levelX / LEVELSPEROCTAVE);
+			this.yScale = -Math.pow(2.0, (double) levelY / LEVELSPEROCTAVE);
+
+			long x = Math.round((view.realAxisStart / xScale) * PHASESTEPS);
+			long y = Math.round((view.imagAxisEnd / yScale) * PHASESTEPS);
+			this.originX = Math.floorDiv(x, PHASESTEPS);
+			this.originY = Math.floorDiv(y, PHASESTEPS);
+			this.phaseX = Math.floorMod(x, PHASESTEPS);
+			this.phaseY = Math.floorMod(y, PHASESTEPS);
+
+			this.firstTileX = Math.floorDiv(originX, TILESIZE);
+			this.firstTileY = Math.floorDiv(originY, TILESIZE);
+			this.tilesAcross = (int) (Math.floorDiv(originX + view.width - 1, TILESIZE) - firstTileX + 1);
+			this.tilesDown = (int) (Math.floorDiv(originY + view.height - 1, TILESIZE) - firstTileY + 1);
+
+			/*
+			 * Pixel x of the view is pixel originX + x of the grid, which runs from 0 at real value 0 (shifted by the
+			 * phase). The imaginary axis works the same way going down the screen, with a negative spacing.
+			 */
+		}
+
+		public int[] centreOutward(){
+			long[] order = new long[tilesAcross * tilesDown];
+
+			for (int ty = 0; ty < tilesDown; ty++){
+				for (int tx = 0; tx < tilesAcross; tx++){
+					long dx = (firstTileX + tx) * TILESIZE + TILESIZE / 2 - originX - view.width / 2;
+					long dy = (firstTileY + ty) * TILESIZE + TILESIZE / 2 - originY - view.height / 2;
+					order[ty * tilesAcross + tx] = ((dx * dx + dy * dy) << 24) | (ty * tilesAcross + tx);
+				}
+			}
+
+			Arrays.sort(order);
+			int[] tiles = new int[order.length];
+
+			for (int i = 0; i < order.length; i++){
+				tiles[i] = (int) (order[i] & 0xFFFFFF);
+			}
+
+			return tiles;
+
+			//The index (ty * tilesAcross + tx) of every tile, sorted by how far its middle is from the middle of the view.
+		}
+
+		private static int level(double scale){
+			return (int) Math.round(Math.log(scale) / Math.log(2.0) * LEVELSPEROCTAVE);
+		}
+
+		public TileKey key(int tx, int ty){
+			return new TileKey(view, levelX, levelY, phaseX, phaseY, firstTileX + tx, firstTileY + ty);
+		}
+
+		public FractalView tileView(int tx, int ty){
+			double realStart = ((firstTileX + tx) * TILESIZE + (double) phaseX / PHASESTEPS) * xScale;
+			double imagEnd = ((firstTileY + ty) * TILESIZE + (double) phaseY / PHASESTEPS) * yScale;
+
+			return new FractalView(view.type, realStart, realStart + TILESIZE * xScale, imagEnd + TILESIZE * yScale, imagEnd,
+					TILESIZE, TILESIZE, view.numberOfIterations, view.juliaReal, view.juliaImag);
+		}
+	}
+
+	static class TileKey {
+		final FractalType type;
+		final long juliaReal;
+		final long juliaImag;
+		final int numberOfIterations;
+		final int levelX;
+		final int levelY;
+		final int phaseX;
+		final int phaseY;
+		final long tileX;
+		final long tileY;
+
+		public TileKey(FractalView view, int levelX, int levelY, int phaseX, int phaseY, long tileX, long tileY){
+			this(view.type, Double.doubleToLongBits(view.juliaReal), Double.doubleToLongBits(view.juliaImag), view.numberOfIterations,
+					levelX, levelY, phaseX, phaseY, tileX, tileY);
+		}
+
+		public TileKey(FractalType type, long juliaReal, long juliaImag, int numberOfIterations, int levelX, int levelY,
+				int phaseX, int phaseY, long tileX, long tileY){
+			this.type = type;
+			this.juliaReal = juliaReal;
+			this.juliaImag = juliaImag;
+			this.numberOfIterations = numberOfIterations;
+			this.levelX = levelX;
+			this.levelY = levelY;
+			this.phaseX = phaseX;
+			this.phaseY = phaseY;
+			this.tileX = tileX;
+			this.tileY = tileY;
+		}
+
+		public boolean equals(Object other){
+			if (other instanceof TileKey == false){
+				return false;
+			}
+
+			TileKey key = (TileKey) other;
+			return type == key.type && juliaReal == key.juliaReal && juliaImag == key.juliaImag
+					&& numberOfIterations == key.numberOfIterations && levelX == key.levelX && levelY == key.levelY
+					&& phaseX == key.phaseX && phaseY == key.phaseY && tileX == key.tileX && tileY == key.tileY;
+		}
+
+		public int hashCode(){
+			int hash = type.hashCode();
+			hash = hash * 31 + Long.hashCode(juliaReal);
+			hash = hash * 31 + Long.hashCode(juliaImag);
+			hash = hash * 31 + numberOfIterations;
+			hash = hash * 31 + levelX;
+			hash = hash * 31 + levelY;
+			hash = hash * 31 + phaseX;
+			hash = hash * 31 + phaseY;
+			hash = hash * 31 + Long.hashCode(tileX);
+			return hash * 31 + Long.hashCode(tileY);
+		}
+	}
+}
@@ -0,0 +1,27 @@
+public interface TileCacheMBean {
+
+	/*
+	 * The attributes TileCache shows over JMX, under FractalViewer in JConsole or VisualVM. The byte budget can
+	 * be changed while the viewer is running, and making it smaller evicts tiles straight away.
+	 */
+
+	long getHits();
+
+	long getDiskHits();
+
+	long getMisses();
+
+	long getEvictions();
+
+	double getHitRate();
+
+	int getTiles();
+
+	long getBytes();
+
+	long getByteBudget();
+
+	void setByteBudget(long byteBudget);
+
+	void clear();
+}
@@ -0,0 +1,207 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class TileLoadTest {
+
+	/*
+	 * Sends tile requests to a TileServer from several clients at once and reports how long the tiles took. Each
+	 * client asks for random tiles from zoom levels 0 to --max-zoom, one after another, the way a map viewer fills
+	 * the screen. Low zoom levels have few tiles, so they are asked for over and over and show the cache and the
+	 * coalescing of requests for the same tile, while deeper levels mostly miss and show the cost of rendering.
+	 *
+	 * Latencies are for the whole request, from opening the connection to reading the last byte. The percentiles
+	 * are of the tiles that were sent (200 responses) only. 503 responses (turned away because the render queue was
+	 * full) come back almost at once and would pull the percentiles down, so they are counted and timed separately,
+	 * and not retried.
+	 *
+	 * Usage:
+	 *   java -cp out TileLoadTest --url http://localhost:8080 --clients 32 --requests 2000 --max-zoom 8
+	 */
+
+	public static void main(String[] args){
+		String url = "http://localhost:8080";
+		String fractal = "mandelbrot";
+		int clients = 16;
+		int requests = 1000;
+		int maxZoom = 6;
+		long seed = 1;
+
+		try {
+			for (int i = 0; i < args.length; i += 2){
+				String value = (i + 1 < args.length) ? args[i + 1] : "";
+
+				switch (args[i]){
+					case "--url": url = value; break;
+					case "--fractal": fractal = value; break;
+					case "--clients": clients = Integer.parseInt(value); break;
+					case "--requests": requests = Integer.parseInt(value); break;
+					case "--max-zoom": maxZoom = Integer.parseInt(value); break;
+					case "--seed": seed = Long.parseLong(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			if (clients < 1 || requests < 1 || maxZoom < 0 || maxZoom > TileServer.MAXZOOM){
+				throw new IllegalArgumentException("The numbers of clients and requests must be positive");
+			}
+
+			run(url, fractal, clients, requests, maxZoom, seed);
+		} catch (IOException e){
+			System.err.println("The load test failed: " + e.getMessage());
+			System.exit(1);
+		} catch (RuntimeException e){
+			System.err.println(e.getMessage());
+			System.err.println("Usage: TileLoadTest [--url URL] [--fractal mandelbrot|julia] [--clients N] [--requests N] [--max-zoom N] [--seed N]");
+			System.exit(2);
+		}
+	}
+
+	private static void run(String url, String fractal, int clients, int requests, int maxZoom, long seed) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		List<Future<Result>> futures = new ArrayList<Future<Result>>();
+		long start = System.nanoTime();
+
+		for (int client = 0; client < clients; client++){
+			int share = requests / clients + ((client < requests % clients) ? 1 : 0);
+			futures.add(pool.submit(new Client(url, fractal, share, maxZoom, new Random(seed + client))));
+		}
+
+		Result total = new Result(requests);
+
+		try {
+			for (Future<Result> future : futures){
+				total.add(future.get());
+			}
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted", e);
+		} catch (ExecutionException e){
+			throw new IOException(e.getCause().getMessage(), e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long[] latencies = Arrays.copyOf(total.okLatencies, total.ok);
+		long[] rejectedLatencies = Arrays.copyOf(total.rejectedLatencies, total.rejected);
+		Arrays.sort(latencies);
+		Arrays.sort(rejectedLatencies);
+
+		System.out.printf("%d requests from %d clients in %.1fs (%.0f requests/s)%n", total.count, clients, seconds, total.count / seconds);
+		System.out.printf("ok %d  rejected (503) %d  other errors %d  bytes %d%n", total.ok, total.rejected, total.failed, total.bytes);
+		System.out.printf("tile latency ms (200 only)  p50 %.1f  p90 %.1f  p99 %.1f  max %.1f%n", percentile(latencies, 0.50),
+				percentile(latencies, 0.90), percentile(latencies, 0.99), percentile(latencies, 1.0));
+
+		if (total.rejected > 0){
+			System.out.printf("rejection latency ms (503)  p50 %.1f  max %.1f%n", percentile(rejectedLatencies, 0.50),
+					percentile(rejectedLatencies, 1.0));
+		}
+	}
+
+	private static double percentile(long[] sorted, double fraction){
+		if (sorted.length == 0){
+			return 0.0;
+		}
+
+		int rank = (int) Math.ceil(fraction * sorted.length) - 1;
+		return sorted[Math.max(0, rank)] / 1e6;
+
+		//Nearest rank percentile in milliseconds, the same way RenderMetrics works them out.
+	}
+
+	static class Client implements Callable<Result> {
+		private final String url;
+		private final String fractal;
+		private final int requests;
+		private final int maxZoom;
+		private final Random random;
+
+		public Client(String url, String fractal, int requests, int maxZoom, Random random){
+			this.url = url;
+			this.fractal = fractal;
+			this.requests = requests;
+			this.maxZoom = maxZoom;
+			this.random = random;
+		}
+
+		public Result call() throws IOException {
+			Result result = new Result(requests);
+			byte[] buffer = new byte[16 * 1024];
+
+			for (int i = 0; i < requests; i++){
+				int zoom = random.nextInt(maxZoom + 1);
+				long x = (long) (random.nextDouble() * (1L << zoom));
+				long y = (long) (random.nextDouble() * (1L << zoom));
+				URL tile = new URL(url + "/" + fractal + "/" + zoom + "/" + x + "/" + y + ".png");
+
+				long start = System.nanoTime();
+				HttpURLConnection connection = (HttpURLConnection) tile.openConnection();
+				int status = connection.getResponseCode();
+				long bytes = 0;
+
+				try (InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream()){
+					int read;
+					while (in != null && (read = in.read(buffer)) > 0){
+						bytes += read;
+					}
+				}
+
+				result.record(System.nanoTime() - start, status, bytes);
+			}
+
+			return result;
+		}
+	}
+
+	static class Result {
+		long[] okLatencies;
+		long[] rejectedLatencies;
+		int count = 0;
+		int ok = 0;
+		int rejected = 0;
+		long failed = 0;
+		long bytes = 0;
+
+		public Result(int capacity){
+			this.okLatencies = new long[capacity];
+			this.rejectedLatencies = new long[capacity];
+		}
+
+		public void record(long nanos, int status, long bodyBytes){
+			count++;
+			bytes += bodyBytes;
+
+			if (status == 200){
+				okLatencies[ok++] = nanos;
+			} else if (status == 503){
+				rejectedLatencies[rejected++] = nanos;
+			} else {
+				failed++;
+			}
+		}
+
+		public void add(Result other){
+			System.arraycopy(other.okLatencies, 0, okLatencies, ok, other.ok);
+			System.arraycopy(other.rejectedLatencies, 0, rejectedLatencies, rejected, other.rejected);
+
+			count += other.count;
+			ok += other.ok;
+			rejected += other.rejected;
+			failed += other.failed;
+			bytes += other.bytes;
+		}
+
+		//Latencies of tiles that were sent and of requests that were turned away are kept apart. Other errors are only counted.
+	}
+}
@@ -0,0 +1,423 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class TileServer {
+	public static final int TILESIZE = 256;
+	public static final int MAXZOOM = 60;
+	public static final int DEFAULTITERATIONS = 256;
+	public static final int MAXITERATIONS = 100000;
+	private static final long WAITSECONDS = 60;
+
+	private final RenderEngine engine;
+	private final ThreadPoolExecutor renderPool;
+	private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<String, CompletableFuture<byte[]>>();
+	private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<String, byte[]>(256, 0.75f, true);
+	private final long cacheBytes;
+	private long cachedBytes = 0;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong rendered = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/*
+	 * Serves the fractals as 256 pixel PNG tiles in the layout slippy map viewers such as Leaflet and OpenLayers
+	 * expect, so the explorer can be shown in a web page without Swing:
+	 *
+	 *   http://localhost:8080/mandelbrot/{z}/{x}/{y}.png
+	 *   http://localhost:8080/julia/{z}/{x}/{y}.png?c=-0.8,0.156
+	 *
+	 * Zoom level 0 is one tile covering a square 4 units across, centred on -0.5 for the Mandelbrot set and on 0
+	 * for Julia sets, and each level splits every tile of the one above into four. The number of iterations can be
+	 * set with ?iterations=N. Mandelbrot tiles are worked out from exact decimal bounds, so zooming in past the
+	 * limit of doubles switches to the deep zoom calculators just as it does in the viewer. GET /stats shows the
+	 * counters below as text.
+	 *
+	 * Tiles are rendered by the same RenderEngine the viewer uses, on every core. At most renderThreads tiles are
+	 * rendered at once, and at most queueSize more wait for a thread. When the queue is full the request is turned
+	 * away at once with 503 and a Retry-After header rather than letting the backlog, and every client's wait,
+	 * grow without limit. Requests for a tile already being rendered wait for that render instead of starting
+	 * another, and finished tiles are kept as encoded PNGs in a least recently used cache of cacheBytes.
+	 *
+	 * Usage:
+	 *   java -cp out TileServer --port 8080 --threads 2 --queue 64 --cache-mb 128
+	 */
+
+	public TileServer(RenderEngine engine, int renderThreads, int queueSize, long cacheBytes){
+		this.engine = engine;
+		this.cacheBytes = cacheBytes;
+		this.renderPool = new ThreadPoolExecutor(renderThreads, renderThreads, 0, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), new BackgroundRenderer.DaemonThreadFactory(),
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public HttpServer start(int port, int connectionThreads) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress(port), 128);
+		server.createContext("/", new TileHandler());
+		server.setExecutor(Executors.newFixedThreadPool(connectionThreads));
+		server.start();
+		return server;
+
+		/*
+		 * The connection threads only parse requests and wait for tiles, the rendering is done on the render pool,
+		 * so there can be more of them than cores.
+		 */
+	}
+
+	public void shutdown(){
+		renderPool.shutdownNow();
+	}
+
+	class TileHandler implements HttpHandler {
+
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				requests.incrementAndGet();
+				String path = exchange.getRequestURI().getPath();
+
+				if (exchange.getRequestMethod().equals("GET") == false){
+					sendText(exchange, 405, "Only GET is supported");
+				} else if (path.equals("/stats")){
+					sendText(exchange, 200, getStats());
+				} else {
+					sendTile(exchange);
+				}
+			} catch (IllegalArgumentException e){
+				sendText(exchange, 400, e.getMessage());
+			} catch (RejectedExecutionException e){
+				rejected.incrementAndGet();
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				sendText(exchange, 503, "Too many tiles waiting to be rendered, try again shortly");
+			} catch (TimeoutException e){
+				sendText(exchange, 504, "The tile took too long to render");
+			} catch (ExecutionException e){
+				sendText(exchange, 500, "There was a problem rendering the tile: " + e.getCause());
+			} catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+				sendText(exchange, 503, "The server is shutting down");
+			} finally {
+				exchange.close();
+			}
+		}
+
+		private void sendTile(HttpExchange exchange) throws IOException, InterruptedException, ExecutionException, TimeoutException {
+			TileRequest tile = TileRequest.parse(exchange.getRequestURI());
+
+			if (tile == null){
+				sendText(exchange, 404, "Tiles are at /mandelbrot/{z}/{x}/{y}.png or /julia/{z}/{x}/{y}.png");
+				return;
+			}
+
+			byte[] png = getTile(tile);
+			exchange.getResponseHeaders().set("Content-Type", "image/png");
+			exchange.getResponseHeaders().set("Cache-Control", "public, max-age=86400");
+			exchange.sendResponseHeaders(200, png.length);
+
+			try (OutputStream out = exchange.getResponseBody()){
+				out.write(png);
+			}
+
+			//A tile never changes, so browsers and proxies may keep it for a day.
+		}
+	}
+
+	public byte[] getTile(TileRequest tile) throws InterruptedException, ExecutionException, TimeoutException {
+		String key = tile.key();
+
+		synchronized (cache){
+			byte[] png = cache.get(key);
+			if (png != null){
+				cacheHits.incrementAndGet();
+				return png;
+			}
+		}
+
+		CompletableFuture<byte[]> created = new CompletableFuture<byte[]>();
+		CompletableFuture<byte[]> future = inFlight.putIfAbsent(key, created);
+
+		if (future != null){
+			coalesced.incrementAndGet();
+		} else {
+			future = created;
+
+			synchronized (cache){
+				byte[] png = cache.get(key);
+				if (png != null){
+					inFlight.remove(key, created); //Finished between the first look and putIfAbsent.
+					created.complete(png);
+					cacheHits.incrementAndGet();
+					return png;
+				}
+			}
+
+			try {
+				renderPool.execute(new RenderTile(tile, created));
+			} catch (RejectedExecutionException e){
+				inFlight.remove(key, created);
+				created.completeExceptionally(e);
+				throw e;
+			}
+		}
+
+		try {
+			return future.get(WAITSECONDS, TimeUnit.SECONDS);
+		} catch (ExecutionException e){
+			if (e.getCause() instanceof RejectedExecutionException){
+				throw (RejectedExecutionException) e.getCause(); //Joined a request that was turned away.
+			}
+
+			throw e;
+		}
+
+		/*
+		 * Only the first request for a tile that is not cached starts a render. Every request that arrives for the
+		 * same tile while it is being rendered waits on the same future.
+		 */
+	}
+
+	class RenderTile implements Runnable {
+		private final TileRequest tile;
+		private final CompletableFuture<byte[]> future;
+
+		public RenderTile(TileRequest tile, CompletableFuture<byte[]> future){
+			this.tile = tile;
+			this.future = future;
+		}
+
+		public void run(){
+			String key = tile.key();
+
+			try {
+				FractalView view = tile.view();
+				int[] pixels = new int[TILESIZE * TILESIZE];
+				engine.render(view, pixels);
+
+				ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+				PngStripWriter writer = new PngStripWriter(out, TILESIZE, TILESIZE);
+				writer.writeRows(pixels, TILESIZE);
+				writer.finish();
+
+				byte[] png = out.toByteArray();
+				rendered.incrementAndGet();
+				addToCache(key, png);
+				future.complete(png);
+			} catch (IOException | RuntimeException | Error e){
+				future.completeExceptionally(e);
+			} finally {
+				inFlight.remove(key, future);
+			}
+
+			//The tile is in the cache before it leaves inFlight, so a request arriving in between never renders it again.
+		}
+	}
+
+	private void addToCache(String key, byte[] png){
+		synchronized (cache){
+			if (cache.put(key, png) == null){
+				cachedBytes += png.length;
+			}
+
+			Iterator<Map.Entry<String, byte[]>> oldest = cache.entrySet().iterator();
+			while (cachedBytes > cacheBytes && oldest.hasNext() == true){
+				cachedBytes -= oldest.next().getValue().length;
+				oldest.remove();
+			}
+		}
+	}
+
+	public String getStats(){
+		int cachedTiles;
+		long bytes;
+
+		synchronized (cache){
+			cachedTiles = cache.size();
+			bytes = cachedBytes;
+		}
+
+		return String.format("requests %d%ncache hits %d%ncoalesced %d%nrendered %d%nrejected %d%nqueued %d%nrendering %d%ncached tiles %d (%d bytes)%n",
+				requests.get(), cacheHits.get(), coalesced.get(), rendered.get(), rejected.get(), renderPool.getQueue().size(),
+				renderPool.getActiveCount(), cachedTiles, bytes);
+	}
+
+	private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] body = text.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+
+		try (OutputStream out = exchange.getResponseBody()){
+			out.write(body);
+		}
+	}
+
+	static class TileRequest {
+		final FractalType type;
+		final int zoom;
+		final long x;
+		final long y;
+		final int numberOfIterations;
+		final double juliaReal;
+		final double juliaImag;
+
+		public TileRequest(FractalType type, int zoom, long x, long y, int numberOfIterations, double juliaReal, double juliaImag){
+			this.type = type;
+			this.zoom = zoom;
+			this.x = x;
+			this.y = y;
+			this.numberOfIterations = numberOfIterations;
+			this.juliaReal = juliaReal;
+			this.juliaImag = juliaImag;
+		}
+
+		public static TileRequest parse(URI uri){
+			String[] parts = uri.getPath().split("/");
+			if (parts.length != 5 || parts[4].endsWith(".png") == false){
+				return null;
+			}
+
+			FractalType type;
+			if (parts[1].equals("mandelbrot")){
+				type = FractalType.MANDELBROT;
+			} else if (parts[1].equals("julia")){
+				type = FractalType.JULIA;
+			} else {
+				return null;
+			}
+
+			int zoom;
+			long x;
+			long y;
+
+			try {
+				zoom = Integer.parseInt(parts[2]);
+				x = Long.parseLong(parts[3]);
+				y = Long.parseLong(parts[4].substring(0, parts[4].length() - 4));
+			} catch (NumberFormatException e){
+				return null;
+			}
+
+			if (zoom < 0 || zoom > MAXZOOM || x < 0 || y < 0 || x >= (1L << zoom) || y >= (1L << zoom)){
+				throw new IllegalArgumentException("No tile " + zoom + "/" + x + "/" + y);
+			}
+
+			int iterations = DEFAULTITERATIONS;
+			double juliaReal = -0.5;
+			double juliaImag = 0.5;
+			String query = uri.getQuery();
+
+			if (query != null){
+				for (String parameter : query.split("&")){
+					String[] pair = parameter.split("=", 2);
+					String value = (pair.length == 2) ? pair[1] : "";
+
+					try {
+						if (pair[0].equals("iterations")){
+							iterations = Integer.parseInt(value);
+						} else if (pair[0].equals("c")){
+							String[] constant = value.split(",");
+							juliaReal = Double.parseDouble(constant[0]);
+							juliaImag = Double.parseDouble(constant[1]);
+						}
+					} catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+						throw new IllegalArgumentException("Could not read " + parameter);
+					}
+				}
+			}
+
+			if (iterations < 1 || iterations > MAXITERATIONS){
+				throw new IllegalArgumentException("iterations must be between 1 and " + MAXITERATIONS);
+			}
+
+			if (type == FractalType.MANDELBROT){
+				juliaReal = 0.0;
+				juliaImag = 0.0;
+			}
+
+			return new TileRequest(type, zoom, x, y, iterations, juliaReal, juliaImag);
+
+			//Returns null if the path is not a tile at all, and throws if it is a tile that cannot be rendered.
+		}
+
+		public String key(){
+			return type + "/" + zoom + "/" + x + "/" + y + "/" + numberOfIterations + "/" + juliaReal + "/" + juliaImag;
+		}
+
+		public FractalView view(){
+			BigDecimal span = new BigDecimal(4).divide(BigDecimal.valueOf(2).pow(zoom));
+			BigDecimal realStart = BigDecimal.valueOf((type == FractalType.MANDELBROT) ? -2.5 : -2.0).add(span.multiply(BigDecimal.valueOf(x)));
+			BigDecimal imagEnd = BigDecimal.valueOf(2.0).subtract(span.multiply(BigDecimal.valueOf(y)));
+			PreciseBounds bounds = new PreciseBounds(realStart, realStart.add(span), imagEnd.subtract(span), imagEnd);
+
+			if (type == FractalType.MANDELBROT){
+				return FractalView.mandelbrot(bounds, TILESIZE, TILESIZE, numberOfIterations);
+			}
+
+			return FractalView.julia(bounds.realAxisStart.doubleValue(), bounds.realAxisEnd.doubleValue(), bounds.imagAxisStart.doubleValue(),
+					bounds.imagAxisEnd.doubleValue(), TILESIZE, TILESIZE, numberOfIterations, juliaReal, juliaImag);
+
+			/*
+			 * Tile (x, y) at zoom z covers 4 / 2^z units with y counting down from the top. Dividing by a power of two
+			 * is exact in decimal, so the bounds of even the deepest tile are exact.
+			 */
+		}
+	}
+
+	public static void main(String[] args){
+		int port = 8080;
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		int queue = 64;
+		int connections = 64;
+		long cacheMegabytes = 128;
+
+		try {
+			for (int i = 0; i < args.length; i += 2){
+				String value = (i + 1 < args.length) ? args[i + 1] : "";
+
+				switch (args[i]){
+					case "--port": port = Integer.parseInt(value); break;
+					case "--threads": threads = Integer.parseInt(value); break;
+					case "--queue": queue = Integer.parseInt(value); break;
+					case "--connections": connections = Integer.parseInt(value); break;
+					case "--cache-mb": cacheMegabytes = Long.parseLong(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			if (threads < 1 || queue < 1 || connections < 1 || cacheMegabytes < 0){
+				throw new IllegalArgumentException("The numbers of threads, the queue and the connections must be positive");
+			}
+
+			TileServer server = new TileServer(new RenderEngine(), threads, queue, cacheMegabytes << 20);
+			server.start(port, connections);
+			System.out.printf("Serving tiles on http://localhost:%d/mandelbrot/{z}/{x}/{y}.png with %d render threads%n", port, threads);
+		} catch (IOException e){
+			System.err.println("The server could not be started: " + e.getMessage());
+			System.exit(1);
+		} catch (RuntimeException e){
+			System.err.println(e.getMessage());
+			System.err.println("Usage: TileServer [--port N] [--threads N] [--queue N] [--connections N] [--cache-mb N]");
+			System.exit(2);
+		}
+	}
+}
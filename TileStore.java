@@ -0,0 +1,301 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+public class TileStore {
+	public static final long DEFAULTBYTES = Long.getLong("tilestore.bytes", 256L << 20);
+	//256MB holds about 8000 tiles. Set with -Dtilestore.bytes=n
+
+	public static final int SLOTSPERSEGMENT = 1024;
+	private static final int SEGMENTMAGIC = 0x54534731; //"TSG1"
+	private static final int RECORDMAGIC = 0x54494C45; //"TILE"
+	private static final int SEGMENTHEADERSIZE = 16;
+	private static final int RECORDHEADERSIZE = 64;
+	private static final int PAYLOADSIZE = TileCache.TILESIZE * TileCache.TILESIZE * 8;
+	public static final int RECORDSIZE = RECORDHEADERSIZE + PAYLOADSIZE;
+
+	private final FileLock lock;
+	//Kept so the lock file's channel, and with it the lock, stays open for as long as the store is used.
+	private final MappedByteBuffer[] segments;
+	private final TileCache.TileKey[] slotKeys;
+	private final HashMap<TileCache.TileKey, Integer> index = new HashMap<TileCache.TileKey, Integer>();
+	private final ArrayDeque<Integer> freeSlots = new ArrayDeque<Integer>();
+	private final BitSet referenced;
+	private int clockHand = 0;
+
+	private long reads = 0;
+	private long writes = 0;
+	private long evictions = 0;
+	private long corrupt = 0;
+
+	/*
+	 * Keeps tiles of iteration data on disk between sessions, underneath the TileCache, so regions explored on
+	 * earlier days are read back instead of iterated again.
+	 *
+	 * The tiles are stored in segment files of SLOTSPERSEGMENT fixed size slots, each memory mapped, so reading or
+	 * writing a tile is a single copy to or from the page cache and the operating system decides when it reaches
+	 * the disk. A slot holds a 64 byte header (the record magic, the tile's key and a CRC32) followed by the counts
+	 * and fractions of the tile.
+	 *
+	 * Which slot holds which tile is kept in a HashMap, so looking a tile up never touches the disk. It is not
+	 * saved anywhere. When the store is opened it is rebuilt by reading just the header of every slot, which is
+	 * far less than reading the tiles themselves.
+	 *
+	 * The number of segments is fixed by the size cap. Once every slot is in use, new tiles replace old ones in
+	 * the order of a clock: a hand goes round the slots and takes the first one that has not been read since the
+	 * hand last passed it, so tiles that keep being used stay on disk.
+	 *
+	 * A slot being replaced is first marked empty, then the tile is written, and the record magic goes in last.
+	 * If the viewer is killed part way through, the slot is still marked empty. If the whole machine stops, some
+	 * of those writes may never reach the disk, so the checksum is checked every time a tile is read, and a tile
+	 * that does not match is treated as missing and its slot reused.
+	 *
+	 * Only one viewer at a time can use the folder, since each keeps its own index and clock hand and they would
+	 * overwrite each other's tiles. The store holds a lock on a file in the folder for as long as the viewer runs,
+	 * and opening fails if another viewer has it, so that viewer only caches tiles in memory. Each read also checks
+	 * that the key stored in the slot is the one asked for, so a slot changed behind the index is never used.
+	 */
+
+	private TileStore(FileLock lock, MappedByteBuffer[] segments){
+		this.lock = lock;
+		this.segments = segments;
+		this.slotKeys = new TileCache.TileKey[segments.length * SLOTSPERSEGMENT];
+		this.referenced = new BitSet(slotKeys.length);
+	}
+
+	public static TileStore open(Path directory, long maximumBytes) throws IOException {
+		Files.createDirectories(directory);
+		FileChannel lockChannel = FileChannel.open(directory.resolve("store.lock"), StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		FileLock lock = null;
+
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e){
+			//Already open in this process.
+		} finally {
+			if (lock == null){
+				lockChannel.close();
+			}
+		}
+
+		if (lock == null){
+			throw new IOException(directory + " is in use by another viewer");
+		}
+
+		int segmentCount = (int) Math.max(1, maximumBytes / ((long) SLOTSPERSEGMENT * RECORDSIZE));
+		long segmentSize = SEGMENTHEADERSIZE + (long) SLOTSPERSEGMENT * RECORDSIZE;
+		MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+
+		for (int i = 0; i < segmentCount; i++){
+			Path file = directory.resolve(String.format("segment%03d.dat", i));
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)){
+				boolean fresh = channel.size() != segmentSize;
+				if (fresh == true){
+					channel.truncate(0); //A segment of another size or version is started again.
+				}
+
+				segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+
+				if (fresh == true || segments[i].getInt(0) != SEGMENTMAGIC || segments[i].getInt(4) != RECORDSIZE){
+					segments[i].putInt(0, SEGMENTMAGIC);
+					segments[i].putInt(4, RECORDSIZE);
+					segments[i].putInt(8, SLOTSPERSEGMENT);
+
+					for (int slot = 0; slot < SLOTSPERSEGMENT; slot++){
+						segments[i].putInt(SEGMENTHEADERSIZE + slot * RECORDSIZE, 0);
+					}
+				}
+			}
+		}
+
+		TileStore store = new TileStore(lock, segments);
+		store.buildIndex();
+		return store;
+
+		/*
+		 * The mapping stays valid after the channel is closed. Segments left over from a larger cap are not opened,
+		 * and their tiles are lost. The lock is kept until the viewer exits.
+		 */
+	}
+
+	private void buildIndex(){
+		for (int slot = 0; slot < slotKeys.length; slot++){
+			ByteBuffer header = header(slot);
+			TileCache.TileKey key = (header.getInt(0) == RECORDMAGIC) ? readKey(header) : null;
+
+			if (key == null || index.containsKey(key) == true){
+				if (header.getInt(0) != 0){
+					header.putInt(0, 0); //An unknown fractal, or a tile already stored in another slot.
+				}
+
+				freeSlots.add(slot);
+			} else {
+				index.put(key, slot);
+				slotKeys[slot] = key;
+			}
+		}
+	}
+
+	public synchronized boolean contains(TileCache.TileKey key){
+		return index.containsKey(key);
+	}
+
+	public synchronized IterationMap read(TileCache.TileKey key, FractalView tileView){
+		Integer slot = index.get(key);
+		if (slot == null){
+			return null;
+		}
+
+		ByteBuffer record = record(slot);
+		ByteBuffer payload = record.duplicate().position(RECORDHEADERSIZE);
+		CRC32 crc = new CRC32();
+		crc.update(record.duplicate().position(4).limit(RECORDHEADERSIZE - 4));
+		crc.update(payload.duplicate());
+
+		if (record.getInt(0) != RECORDMAGIC || key.equals(readKey(record)) == false
+				|| (int) crc.getValue() != record.getInt(RECORDHEADERSIZE - 4)){
+			corrupt++;
+			release(slot);
+			return null;
+		}
+
+		IterationMap tile = new IterationMap(tileView);
+		tile.readFrom(payload);
+		referenced.set(slot);
+		reads++;
+		return tile;
+
+		//Returns the tile, or null if it is not on disk, did not survive a crash or the slot now holds another tile.
+	}
+
+	public synchronized void write(TileCache.TileKey key, IterationMap tile){
+		if (index.containsKey(key) == true){
+			return;
+		}
+
+		int slot = allocate();
+		ByteBuffer record = record(slot);
+		record.putInt(0, 0);
+
+		ByteBuffer header = record.duplicate().position(4);
+		writeKey(header, key);
+		tile.writeTo(record.duplicate().position(RECORDHEADERSIZE));
+
+		CRC32 crc = new CRC32();
+		crc.update(record.duplicate().position(4).limit(RECORDHEADERSIZE - 4));
+		crc.update(record.duplicate().position(RECORDHEADERSIZE));
+		record.putInt(RECORDHEADERSIZE - 4, (int) crc.getValue());
+		record.putInt(0, RECORDMAGIC);
+
+		index.put(key, slot);
+		slotKeys[slot] = key;
+		referenced.clear(slot);
+		writes++;
+	}
+
+	private int allocate(){
+		if (freeSlots.isEmpty() == false){
+			return freeSlots.poll();
+		}
+
+		while (referenced.get(clockHand) == true){
+			referenced.clear(clockHand);
+			clockHand = (clockHand + 1) % slotKeys.length;
+		}
+
+		int slot = clockHand;
+		clockHand = (clockHand + 1) % slotKeys.length;
+		index.remove(slotKeys[slot]);
+		slotKeys[slot] = null;
+		evictions++;
+		return slot;
+
+		//Every slot the hand passes over loses its second chance, so this always stops within one turn.
+	}
+
+	private void release(int slot){
+		record(slot).putInt(0, 0);
+		index.remove(slotKeys[slot]);
+		slotKeys[slot] = null;
+		freeSlots.add(slot);
+	}
+
+	private ByteBuffer record(int slot){
+		int position = SEGMENTHEADERSIZE + (slot % SLOTSPERSEGMENT) * RECORDSIZE;
+		return segments[slot / SLOTSPERSEGMENT].duplicate().position(position).limit(position + RECORDSIZE).slice();
+	}
+
+	private ByteBuffer header(int slot){
+		return record(slot).limit(RECORDHEADERSIZE);
+	}
+
+	private static void writeKey(ByteBuffer header, TileCache.TileKey key){
+		header.putInt(key.type.ordinal());
+		header.putLong(key.juliaReal);
+		header.putLong(key.juliaImag);
+		header.putInt(key.numberOfIterations);
+		header.putInt(key.levelX);
+		header.putInt(key.levelY);
+		header.putInt(key.phaseX);
+		header.putInt(key.phaseY);
+		header.putLong(key.tileX);
+		header.putLong(key.tileY);
+
+		//56 bytes after the record magic, then the CRC32 in the last 4 bytes of the header.
+	}
+
+	private static TileCache.TileKey readKey(ByteBuffer header){
+		ByteBuffer in = header.duplicate().position(4);
+		int type = in.getInt();
+
+		if (type < 0 || type >= FractalType.values().length){
+			return null;
+		}
+
+		return new TileCache.TileKey(FractalType.values()[type], in.getLong(), in.getLong(), in.getInt(), in.getInt(), in.getInt(),
+				in.getInt(), in.getInt(), in.getLong(), in.getLong());
+	}
+
+	public synchronized int getTiles(){
+		return index.size();
+	}
+
+	public int getCapacity(){
+		return slotKeys.length;
+	}
+
+	public synchronized long getReads(){
+		return reads;
+	}
+
+	public synchronized long getWrites(){
+		return writes;
+	}
+
+	public synchronized long getEvictions(){
+		return evictions;
+	}
+
+	public synchronized long getCorrupt(){
+		return corrupt;
+	}
+
+	public synchronized void force(){
+		for (MappedByteBuffer segment : segments){
+			segment.force();
+		}
+
+		//Writes every changed page to the disk now rather than whenever the operating system gets round to it.
+	}
+}
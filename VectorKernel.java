@@ -0,0 +1,71 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+public class VectorKernel {
+	private static final Constructor<?> CONSTRUCTOR = findCalculator();
+
+	/*
+	 * Finds the Vector API kernel at runtime. VectorPixelCalculator uses the jdk.incubator.vector module, which is
+	 * only there when the JVM is started with --add-modules jdk.incubator.vector, so it is compiled separately from
+	 * the vector folder and never referred to directly. If the class or the module cannot be loaded, or the
+	 * processor has no vectors wider than one double, the scalar kernel is used instead.
+	 *
+	 * To build and run with the vector kernel:
+	 *   javac -d out *.java
+	 *   javac --add-modules jdk.incubator.vector -cp out -d out vector/*.java
+	 *   java --add-modules jdk.incubator.vector -cp out Viewer
+	 *
+	 * It can be turned off with -Drender.vector=false, mainly to compare against the scalar kernel.
+	 */
+
+	private VectorKernel(){}
+
+	private static Constructor<?> findCalculator(){
+		if (Boolean.parseBoolean(System.getProperty("render.vector", "true")) == false){
+			return null;
+		}
+
+		try {
+			Class<?> calculatorClass = Class.forName("VectorPixelCalculator");
+			Method laneCount = calculatorClass.getMethod("laneCount");
+
+			if (((Integer) laneCount.invoke(null)) < 2){
+				return null; //No wider vectors than a single double, so the scalar kernel is just as quick.
+			}
+
+			return calculatorClass.getConstructor(FractalView.class);
+		} catch (ReflectiveOperationException | LinkageError e){
+			return null; //The class was not compiled in, or the incubator module is not present.
+		}
+	}
+
+	public static boolean isAvailable(){
+		return CONSTRUCTOR != null;
+	}
+
+	public static int getLaneCount(){
+		if (CONSTRUCTOR == null){
+			return 1;
+		}
+
+		try {
+			return (Integer) CONSTRUCTOR.getDeclaringClass().getMethod("laneCount").invoke(null);
+		} catch (ReflectiveOperationException e){
+			return 1;
+		}
+	}
+
+	public static PixelCalculator create(FractalView view){
+		if (CONSTRUCTOR != null){
+			try {
+				return (PixelCalculator) CONSTRUCTOR.newInstance(view);
+			} catch (ReflectiveOperationException e){
+				//Falls through to the scalar kernel.
+			}
+		}
+
+		return new DoublePixelCalculator(view);
+
+		//Returns the vector kernel when it can be used and the scalar double kernel otherwise.
+	}
+}
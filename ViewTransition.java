@@ -0,0 +1,170 @@
+import java.awt.image.BufferedImage;
+
+public class ViewTransition {
+	private static final double PANTOLERANCE = 1e-6;
+	//How far from a whole number of pixels a move can be and still be treated as a pan.
+
+	/*
+	 * Works out how much of the previous image can be reused when the view changes. A pan (the same size
+	 * of view moved by a whole number of pixels) keeps every pixel that is still on screen, so only the strips
+	 * that have been uncovered need calculating. Any other change that overlaps the previous view, such as a
+	 * zoom, can be shown straight away by stretching the old pixels into place while the new image is rendered.
+	 */
+
+	private ViewTransition(){}
+
+	public static boolean sameFractal(FractalView from, FractalView to){
+		return from.type == to.type && from.numberOfIterations == to.numberOfIterations
+				&& Double.compare(from.juliaReal, to.juliaReal) == 0 && Double.compare(from.juliaImag, to.juliaImag) == 0;
+
+		//Pixels can only be reused between views of the same fractal with the same number of iterations.
+	}
+
+	public static int[] panOffset(FractalView from, FractalView to){
+		if (sameFractal(from, to) == false || from.width != to.width || from.height != to.height){
+			return null;
+		}
+
+		double xPixels = realOffset(from, to) / from.getXScale();
+		double yPixels = imagOffset(from, to) / from.getYScale();
+		double widthRatio = to.getXScale() / from.getXScale();
+		double heightRatio = to.getYScale() / from.getYScale();
+
+		if (Math.abs(widthRatio - 1.0) > PANTOLERANCE || Math.abs(heightRatio - 1.0) > PANTOLERANCE
+				|| Math.abs(xPixels - Math.rint(xPixels)) > PANTOLERANCE || Math.abs(yPixels - Math.rint(yPixels)) > PANTOLERANCE){
+			return null;
+		}
+
+		return new int[] {(int) Math.rint(xPixels), (int) Math.rint(yPixels)};
+
+		//Returns how many pixels the view has moved by, or null if the change is not a pan.
+	}
+
+	private static double realOffset(FractalView from, FractalView to){
+		if (from.precise != null && to.precise != null){
+			return to.precise.realAxisStart.subtract(from.precise.realAxisStart).doubleValue();
+		}
+
+		return to.realAxisStart - from.realAxisStart;
+	}
+
+	private static double imagOffset(FractalView from, FractalView to){
+		if (from.precise != null && to.precise != null){
+			return to.precise.imagAxisEnd.subtract(from.precise.imagAxisEnd).doubleValue();
+		}
+
+		return to.imagAxisEnd - from.imagAxisEnd;
+
+		//The difference is worked out with the precise values where possible so it is still accurate on a deep zoom.
+	}
+
+	public static int[] alignedColumns(FractalView from, FractalView to){
+		return aligned(realOffset(from, to) / from.getXScale(), to.getXScale() / from.getXScale(), from.width, to.width);
+	}
+
+	public static int[] alignedRows(FractalView from, FractalView to){
+		return aligned(imagOffset(from, to) / from.getYScale(), to.getYScale() / from.getYScale(), from.height, to.height);
+
+		/*
+		 * For every column (or row) of the new view, the column of the old view that samples the same real (or
+		 * imaginary) value, or -1 if there is none. A pixel of the new view can be copied from the old one when
+		 * both its column and its row line up. This covers pans, and zooms by a whole number where the centre of
+		 * the zoom is on a pixel, which are the only cases where the two pixel grids share points.
+		 */
+	}
+
+	private static int[] aligned(double offset, double ratio, int fromPixels, int toPixels){
+		int[] aligned = new int[toPixels];
+
+		for (int i = 0; i < toPixels; i++){
+			double position = offset + (i * ratio);
+			long nearest = Math.round(position);
+
+			if (Math.abs(position - nearest) <= PANTOLERANCE && nearest >= 0 && nearest < fromPixels){
+				aligned[i] = (int) nearest;
+			} else {
+				aligned[i] = -1;
+			}
+		}
+
+		return aligned;
+	}
+
+	public static double zoomFactor(FractalView from, FractalView to){
+		return Math.abs(from.getXScale() / to.getXScale());
+
+		//Greater than 1 when zooming in. Each pixel of the old image covers this many pixels of the new one.
+	}
+
+	public static int[][] exposedStrips(int width, int height, int xPixels, int yPixels){
+		int[] columns;
+		int[] rows;
+
+		if (xPixels >= 0){
+			columns = new int[] {Math.max(0, width - xPixels), 0, Math.min(width, xPixels), height};
+		} else {
+			columns = new int[] {0, 0, Math.min(width, -xPixels), height};
+		}
+
+		int xKeptStart = Math.max(0, -xPixels);
+		int xKeptEnd = Math.min(width, width - xPixels);
+
+		if (yPixels >= 0){
+			rows = new int[] {xKeptStart, Math.max(0, height - yPixels), Math.max(0, xKeptEnd - xKeptStart), Math.min(height, yPixels)};
+		} else {
+			rows = new int[] {xKeptStart, 0, Math.max(0, xKeptEnd - xKeptStart), Math.min(height, -yPixels)};
+		}
+
+		return new int[][] {columns, rows};
+
+		/*
+		 * Returns the strips uncovered by a pan as {x, y, width, height}: a full height strip of columns on the left
+		 * or right, and a strip of rows at the top or bottom that does not overlap it. Either may have no area.
+		 */
+	}
+
+	public static BufferedImage remap(FractalView from, BufferedImage fromImage, FractalView to){
+		if (sameFractal(from, to) == false || fromImage.getWidth() != from.width || fromImage.getHeight() != from.height){
+			return null;
+		}
+
+		double xRatio = to.getXScale() / from.getXScale();
+		double yRatio = to.getYScale() / from.getYScale();
+		double xOffset = realOffset(from, to) / from.getXScale();
+		double yOffset = imagOffset(from, to) / from.getYScale();
+
+		int[] fromPixels = fromImage.getRGB(0, 0, from.width, from.height, null, 0, from.width);
+		int[] toPixels = new int[to.width * to.height];
+		boolean overlaps = false;
+
+		for (int y = 0; y < to.height; y++){
+			int fromY = (int) Math.floor(yOffset + (y * yRatio) + 0.5);
+
+			if (fromY < 0 || fromY >= from.height){
+				continue;
+			}
+
+			for (int x = 0; x < to.width; x++){
+				int fromX = (int) Math.floor(xOffset + (x * xRatio) + 0.5);
+
+				if (fromX >= 0 && fromX < from.width){
+					toPixels[y * to.width + x] = fromPixels[fromY * from.width + fromX];
+					overlaps = true;
+				}
+			}
+		}
+
+		if (overlaps == false){
+			return null;
+		}
+
+		BufferedImage image = new BufferedImage(to.width, to.height, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, to.width, to.height, toPixels, 0, to.width);
+		return image;
+
+		/*
+		 * Builds a preview of the new view by taking the nearest old pixel for every new pixel. Pixels the old view
+		 * did not cover are left transparent. Returns null if nothing can be reused.
+		 */
+	}
+}
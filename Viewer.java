@@ -1,7 +1,14 @@
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
+import javax.swing.plaf.basic.ComboPopup;
 import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 
 
@@ -38,15 +45,98 @@ class ViewerFrame extends JFrame {
 	int numberOfIterations = DEFAULTITERATIONS;
 	//Variables that can be changed by the user within the GUI are initialized using the default values
 
+	PreciseBounds axisBounds = PreciseBounds.of(DEFAULTXAXISSTART, DEFAULTXAXISEND, DEFAULTYAXISSTART, DEFAULTYAXISEND);
+	//The same axis values stored with as many digits as needed. These are the real values, the Doubles above are kept in step.
+
 	final static int MAXITERATIONS = 512;
 
 	IOHandler favouriter; //The main window has a IOHandler object so it can interest with the IOHandler class and its methods.
 
+	RenderEngine renderEngine = new RenderEngine(); //Shared by both panels to render images on every core.
+
+	RenderScheduler scheduler = new RenderScheduler(renderEngine);
+	//Renders the views the user is likely to go to next while both panels are idle.
+
+	ClickedOnImageListener clickedMandelbrot; //Kept so the Julia panel can tell whether its constant is following the mouse.
+
+	ThumbnailCache thumbnails = new ThumbnailCache(new File("thumbnails"), ThumbnailCache.DEFAULTITERATIONS,
+			ThumbnailCache.DEFAULTMEMORYENTRIES, new ThumbnailRepaintListener());
+	//Small previews of each Julia favourite shown in the favourites combo box.
+
+	boolean showHud = Boolean.getBoolean("viewer.hud");
+	//Whether the render statistics are drawn over each image. Turned on with the Stats box or -Dviewer.hud=true
+
 	public ViewerFrame(String windowName, IOHandler favouriter){
 		super(windowName);
 		this.favouriter = favouriter;
 	}
 
+	public void changeAxisBounds(PreciseBounds bounds){
+		axisBounds = bounds;
+		realAxisStart = bounds.realAxisStart.doubleValue();
+		realAxisEnd = bounds.realAxisEnd.doubleValue();
+		imagAxisStart = bounds.imagAxisStart.doubleValue();
+		imagAxisEnd = bounds.imagAxisEnd.doubleValue();
+
+		//All changes to the axis values go through here so the precise values and the Doubles always agree.
+	}
+
+	public void drawHud(Graphics g, RenderMetrics metrics){
+		if (metrics.getRenders() == 0){
+			return;
+		}
+
+		long escaped = metrics.getEscapedPixels();
+		long interior = metrics.getInteriorPixels();
+		String[] lines = {
+				String.format("render %.1f ms  (p50 %.1f  p90 %.1f  p99 %.1f)", metrics.getLastRenderMillis(),
+						metrics.getRenderMillisP50(), metrics.getRenderMillisP90(), metrics.getRenderMillisP99()),
+				String.format("iterate %.1f ms  colour %.1f ms  blit %.2f ms  (p50, all threads)", metrics.getIterateMillisP50(),
+						metrics.getColourMillisP50(), metrics.getBlitMillisP50()),
+				String.format("%.1f Mpixels/s  %.0f Miterations/s", metrics.getPixelsPerSecond() / 1e6, metrics.getIterationsPerSecond() / 1e6),
+				String.format("escaped %d  interior %d (%.0f%%)", escaped, interior, 100.0 * interior / Math.max(1, escaped + interior))
+		};
+
+		g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 11));
+		FontMetrics fontMetrics = g.getFontMetrics();
+		int lineHeight = fontMetrics.getHeight();
+		int width = 0;
+		for (String line : lines){
+			width = Math.max(width, fontMetrics.stringWidth(line));
+		}
+
+		long[] histogram = metrics.getEscapeHistogram();
+		int histogramHeight = 30;
+		int boxHeight = (lines.length * lineHeight) + histogramHeight + 12;
+
+		g.setColor(new Color(0, 0, 0, 160));
+		g.fillRect(4, 4, width + 12, boxHeight);
+		g.setColor(Color.white);
+
+		for (int i = 0; i < lines.length; i++){
+			g.drawString(lines[i], 10, 4 + fontMetrics.getAscent() + (i * lineHeight) + 2);
+		}
+
+		long largest = 1;
+		for (long bucket : histogram){
+			largest = Math.max(largest, bucket);
+		}
+
+		int barWidth = Math.max(1, (width / histogram.length) - 1);
+		int baseline = 4 + boxHeight - 6;
+		for (int bucket = 0; bucket < histogram.length; bucket++){
+			int barHeight = (int) Math.ceil((double) histogramHeight * histogram[bucket] / largest);
+			g.fillRect(10 + bucket * (barWidth + 1), baseline - barHeight, barWidth, barHeight);
+		}
+
+		/*
+		 * Draws the render statistics in the top left corner of a panel: the wall time of the last render and
+		 * the percentiles of the recent ones, the time spent iterating and coloring added up over every thread,
+		 * how long the image took to draw, the throughput and how many pixels escaped. Underneath is the
+		 * histogram of escape counts, one bar for each power of two from left to right.
+		 */
+	}
+
 	public void init(){
 
 		mandelbrotPanel = new MandelbrotPanel(); //JPanel consists entirely as a canvas for the Mandelbrot Set
@@ -81,12 +171,15 @@ class ViewerFrame extends JFrame {
 
 		mandelbrotCtrlPanel.btnUpdate.addActionListener(new UpdateListener());
 		mandelbrotCtrlPanel.btnReset.addActionListener(new ResetListener());
-		ClickedOnImageListener clickedMandelbrot = new ClickedOnImageListener();
+		clickedMandelbrot = new ClickedOnImageListener();
 		mandelbrotPanel.addMouseListener(clickedMandelbrot);
 		mandelbrotPanel.addMouseMotionListener(clickedMandelbrot);
 		ZoomDragListener zoomDrag = new ZoomDragListener();
 		mandelbrotPanel.addMouseListener(zoomDrag);
 		mandelbrotPanel.addMouseMotionListener(zoomDrag);
+		PanDragListener panDrag = new PanDragListener();
+		mandelbrotPanel.addMouseListener(panDrag);
+		mandelbrotPanel.addMouseMotionListener(panDrag);
 		//All the listeners required are added to the components that require them
 
 		this.setDefaultCloseOperation( JFrame.EXIT_ON_CLOSE);
@@ -101,10 +194,16 @@ class ViewerFrame extends JFrame {
 	class MandelbrotPanel extends JPanel {
 
 		private BufferedImage canvas; //Canvas is the BufferedImage in which the Mandelbrot set is displayed
+		private int canvasStep = 1; //How many screen pixels each canvas pixel covers while a preview pass is shown.
 
 		boolean dragging = false; //Dragging must always start at false.
 		Rectangle currentRect; //Rectangle object & dragging used when user selects area to zoom in on with mouse.
 
+		BackgroundRenderer renderer; //Renders the Mandelbrot set off the Event Dispatch Thread.
+		TileCache tileCache; //Tiles of earlier and prefetched renders.
+		RenderMetrics metrics; //Timings of the recent renders, also shown over JMX.
+		String renderSource = "Repaint"; //What changed the view since the last paint, recorded with each render request.
+
 
 		public MandelbrotPanel(){
 			super();
@@ -116,83 +215,91 @@ class ViewerFrame extends JFrame {
 			this.setMaximumSize(getMinimumSize());
 			this.setBackground(Color.white);
 
+			renderer = new BackgroundRenderer(renderEngine, new CanvasListener());
+			metrics = RenderMetrics.register("Mandelbrot");
+			renderer.setMetrics(metrics);
+			tileCache = TileCache.register("Mandelbrot", TileCache.DEFAULTBYTEBUDGET);
+			renderer.setTileCache(tileCache);
+			scheduler.addRenderer(renderer);
+
+			try {
+				tileCache.setStore(TileStore.open(Paths.get("tilecache"), TileStore.DEFAULTBYTES));
+			} catch (IOException e) {
+				System.err.println("The tile cache folder could not be opened (" + e.getMessage() + "), tiles will only be cached until the viewer is closed");
+			}
+
+			/*
+			 * Views that have been rendered before, such as the default view after Reset, are built from cached tiles.
+			 * Tiles are also kept in the tilecache folder, so regions explored in earlier sessions are read back from
+			 * disk rather than iterated again.
+			 */
 		}
 
 		public void paintComponent(Graphics g){
 			super.paintComponent(g);
 
+			renderer.requestRender(currentView(), renderSource);
+			renderSource = "Repaint";
+
+			if (canvas != null){
+				RenderEvents.ImageBlit event = new RenderEvents.ImageBlit();
+				event.begin();
+				long blitStart = System.nanoTime();
+				g.drawImage(canvas, 0, 0, canvas.getWidth() * canvasStep, canvas.getHeight() * canvasStep, null);
+				metrics.recordBlit(System.nanoTime() - blitStart);
+				event.end();
+
+				if (event.shouldCommit()){
+					event.setView(currentView());
+					event.pixels = (long) canvas.getWidth() * canvas.getHeight();
+					event.step = canvasStep;
+					event.commit();
+				}
+			}
+
+			if (showHud == true){
+				drawHud(g, metrics);
+			}
+
 			if (dragging == true) {
-				g.drawImage(canvas, 0, 0, null);
 				g.setColor(Color.white);
 				g.drawRect(currentRect.x, currentRect.y, currentRect.width, currentRect.height);
-
-			} else {
-				canvas = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
-				generateImage(canvas);
-				g.drawImage(canvas, 0, 0, null);
 			}
 
 			/*
-			 * If dragging is true it means the user is making a rectangular selection with their mouse
-			 * within the event listener ZoomDragListener. When this happens the paintComponent method 
-			 * puts the already drawn canvas on the JPanel (no recalculations are done) and a white rectangle
-			 * with the coordinates the user has dragged to is drawn on screen. 
+			 * The view the user has asked for is passed to the BackgroundRenderer. If the axis values or number of
+			 * iterations have changed since the last paint, the old render is cancelled and a new one is started
+			 * on another thread. Otherwise nothing is recalculated. Whatever image is currently available is drawn,
+			 * scaled up if it is one of the low resolution preview passes.
+			 * 
+			 * The time taken to draw the image is recorded as its blit time, and the render statistics are drawn
+			 * over the top if the HUD is turned on.
 			 * 
-			 * Else a new BufferedImage the size of the Panel (if resizing it turned on in future versions) is created.
-			 * generateImage method performs the calculations to display the Mandelbrot set. Calls generateImage
-			 * as rarely as possible. 
+			 * If dragging is true it means the user is making a rectangular selection with their mouse
+			 * within the event listener ZoomDragListener, so a white rectangle with the coordinates the user
+			 * has dragged to is drawn on top of the canvas. 
 			 */
 
 		}
 
-		public void generateImage(BufferedImage image){
-			Calculator calculator = new Calculator(numberOfIterations); //Calculator object needed for work out values and generate image
+		public FractalView currentView(){
+			return FractalView.mandelbrot(axisBounds, this.getWidth(), this.getHeight(), numberOfIterations);
 
-			int xWidth = this.getWidth();
-			int yHeight = this.getHeight();
-
-			/*
-			 * Width and height of the JPanel are stored to be used to work out what Complex number each Pixel represents. 
-			 */
-
-			Double xReal; //Real number part of complex number 
-			Double yImag; //Imaginary number part of complex number
-
-			//Complex zConstant = new Complex(0.0, 0.0); Depreciated 
-
-			for (int x = 0; x < xWidth; x++){
-				for(int y = 0; y < yHeight; y++){
-					xReal = this.translateXCord(x);
-					yImag = this.translateYCord(y);
-
-					/*
-					 * Double for loop, one increments x pixel value and other increments y pixel value.
-					 * Results the real number value and imaginary number value each pixel represents, dependent 
-					 * on the user selected axis values, being calculated.
-					 */
-
-					Complex complex = new Complex(xReal, yImag); //A complex number object is created to represent each pixel.
-					int iterTaken;
-
-					iterTaken = calculator.calcIterations(complex); //Returns the number of iterations it takes to escape.
+			//Snapshot of the current axis values, panel size and number of iterations.
+		}
 
-					if(iterTaken == numberOfIterations){
-						canvas.setRGB(x, y, Color.black.getRGB());	//Complex numbers that do not escape are coloured black
-					} else {
-						double smooth = iterTaken + 1 - Math.log(Math.log(calculator.z.modulus())  / Math.log(2.0));
-						double nsmooth = smooth / numberOfIterations; //Ensures it always a fraction.
-						int rgb = Color.HSBtoRGB((float) (0.99f + 1.9 * nsmooth), 0.9f, 0.9f);
-						canvas.setRGB(x, y, rgb);
+		class CanvasListener implements BackgroundRenderer.ImageListener {
 
-						/*
-						 * The smooth coloring algorithm is used. The hue, saturation and brightness can be tweaked to
-						 * whatever is preferable for color. There is no specific reasoning behind the numbers, they are
-						 * simply personal preference. 
-						 */
-					}
+			public void imageReady(FractalView view, BufferedImage image, int step, boolean complete){
+				canvas = image;
+				canvasStep = step;
+				repaint();
 
-					calculator.resetCalculator(); //Calculator must be reset at the end of every calculation. 
+				if (complete == true){
+					scheduler.prefetch(RenderScheduler.PAN, tileCache, RenderScheduler.panNeighbours(view));
 				}
+
+				//Once the view is finished the views around it are rendered in the background, ready for a pan.
 			}
 		}
 
@@ -340,7 +447,16 @@ class ViewerFrame extends JFrame {
 		Complex juliaConstant = new Complex(-0.5, 0.5);
 		//Initial Julia Set displayed is of the complex number -0.5 + 0.5i
 
-		private BufferedImage juliaCanvas;
+		private BufferedImage juliaCanvas; //Latest full resolution Julia image, used when saving.
+		private FractalView juliaCanvasView; //The view juliaCanvas is an image of, which may not be the constant being shown now.
+		private BufferedImage previewCanvas; //Latest image of any resolution, this is what is drawn on screen.
+		private int previewStep = 1;
+
+		BackgroundRenderer renderer;
+		TileCache tileCache; //Julia sets rendered before or prefetched for nearby constants, kept in memory only.
+		HoverPreviewScheduler hoverScheduler; //Renders quick previews while the Julia constant follows the mouse.
+		RenderMetrics metrics;
+		String renderSource = "Repaint";
 
 		public JuliaPanel(){
 			super();
@@ -351,49 +467,90 @@ class ViewerFrame extends JFrame {
 			this.setMinimumSize(getPreferredSize());
 			this.setMaximumSize(getPreferredSize());
 
+			JuliaCanvasListener listener = new JuliaCanvasListener();
+			renderer = new BackgroundRenderer(renderEngine, listener);
+			metrics = RenderMetrics.register("Julia");
+			renderer.setMetrics(metrics);
+			tileCache = TileCache.register("Julia", TileCache.DEFAULTBYTEBUDGET);
+			renderer.setTileCache(tileCache);
+			scheduler.addRenderer(renderer);
+			hoverScheduler = new HoverPreviewScheduler(renderEngine, renderer, listener);
+
+			/*
+			 * The Julia panel always shows the square around 0, which is its own mirror image under z -> -z. A Julia
+			 * set that is not cached yet is therefore iterated as a whole view with Symmetry, and its tiles are cut out
+			 * afterwards (see TileCache.renderWhole), so caching does not cost the mirrored pixels.
+			 */
 		}
 
 		public void paintComponent(Graphics g){
 			super.paintComponent(g);
-			juliaCanvas = new BufferedImage(this.getWidth(), this.getHeight(), BufferedImage.TYPE_INT_ARGB);
-			generateImage(juliaCanvas); //method used to perform calculations and generate the Julia Set
-			g.drawImage(juliaCanvas, 0, 0, null);
-		}
+			hoverScheduler.requestRender(currentView(), renderSource); //Only starts a new render if the constant or iterations have changed, and the mouse is not moving.
+			renderSource = "Repaint";
+
+			if (previewCanvas != null){
+				RenderEvents.ImageBlit event = new RenderEvents.ImageBlit();
+				event.begin();
+				long blitStart = System.nanoTime();
+				g.drawImage(previewCanvas, 0, 0, previewCanvas.getWidth() * previewStep, previewCanvas.getHeight() * previewStep, null);
+				metrics.recordBlit(System.nanoTime() - blitStart);
+				event.end();
+
+				if (event.shouldCommit()){
+					event.setView(currentView());
+					event.pixels = (long) previewCanvas.getWidth() * previewCanvas.getHeight();
+					event.step = previewStep;
+					event.commit();
+				}
+			}
 
-		public void generateImage(BufferedImage image){
-			Calculator calculator = new Calculator(numberOfIterations, juliaConstant);
-			//Calculator is told how many iterations to iterate to and the juliaConstant it is working with.
+			if (showHud == true){
+				drawHud(g, metrics);
+			}
+		}
 
-			int xWidth = this.getWidth();
-			int yHeight = this.getHeight();
+		public FractalView currentView(){
+			return FractalView.julia(REALXAXISSTART, REALXAXISEND, IMAGYAXISSTART, IMAGYAXISEND,
+					this.getWidth(), this.getHeight(), numberOfIterations, juliaConstant.getRealNum(), juliaConstant.getImagNum());
+		}
 
-			Double xReal;
-			Double yImag;
+		class JuliaCanvasListener implements BackgroundRenderer.ImageListener {
 
-			for (int x = 0; x < xWidth; x++){
-				for(int y = 0; y < yHeight; y++){
-					xReal = this.translateXCord(x);
-					yImag = this.translateYCord(y);
+			public void imageReady(FractalView view, BufferedImage image, int step, boolean complete){
+				previewCanvas = image;
+				previewStep = step;
 
-					Complex complex = new Complex(xReal, yImag); //Complex number that each pixel represents is calculated.
+				if (complete == true){
+					juliaCanvas = image;
+					juliaCanvasView = view;
+				}
 
-					int iterTaken = calculator.calculateJulia(complex); //Returns the number of iterations taken.
+				repaint();
 
-					if(iterTaken == numberOfIterations){
-						juliaCanvas.setRGB(x, y, Color.black.getRGB());
-					} else {
-						double smooth = iterTaken + 1 - Math.log(Math.log(calculator.juliaD.modulus())  / Math.log(2.0));
-						double nsmooth = smooth / numberOfIterations;
-						int rgb = Color.HSBtoRGB((float) (0.49f + 1.9 * nsmooth), 0.9f, 0.9f);
+				if (complete == true && clickedMandelbrot != null && clickedMandelbrot.liveUpdates == true){
+					scheduler.prefetch(RenderScheduler.JULIA, tileCache, nearbyViews(view));
+				}
+			}
+		}
 
-						//Same smooth coloring as Mandelbrot set is used, however the numbers in the hue
-						//values are tweaked to ensure the Julia set has a different color scheme compared to the
-						//Mandelbrot set.
+		public List<FractalView> nearbyViews(FractalView view){
+			List<FractalView> views = new ArrayList<FractalView>();
+			int xCord = (int) Math.round((view.juliaReal - realAxisStart) / ((realAxisEnd - realAxisStart) / mandelbrotPanel.getWidth()));
+			int yCord = (int) Math.round((view.juliaImag - imagAxisEnd) / ((imagAxisStart - imagAxisEnd) / mandelbrotPanel.getHeight()));
+			int[][] offsets = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
 
-						juliaCanvas.setRGB(x, y, rgb);
-					}
-				}
+			for (int[] offset : offsets){
+				views.add(FractalView.julia(REALXAXISSTART, REALXAXISEND, IMAGYAXISSTART, IMAGYAXISEND, view.width, view.height,
+						view.numberOfIterations, mandelbrotPanel.translateXCord(xCord + offset[0]), mandelbrotPanel.translateYCord(yCord + offset[1])));
 			}
+
+			return views;
+
+			/*
+			 * The Julia sets the mouse reaches next if it moves one pixel over the Mandelbrot panel. The constants are
+			 * worked out with translateXCord and translateYCord, the same way ClickedOnImageListener does, so they
+			 * match exactly and the prefetched tiles are found in the cache.
+			 */
 		}
 
 		public Double translateXCord(int xCord){
@@ -426,6 +583,19 @@ class ViewerFrame extends JFrame {
 			 * is changed to reflect the point selected. Repaint is called to update the Julia Panel.
 			 */
 		}
+
+		public void hoverJuliaConstant(Double xReal, Double yImag){
+			juliaConstant.changeRealNum(xReal);
+			juliaConstant.changeImagNum(yImag);
+
+			hoverScheduler.hover(currentView());
+
+			/*
+			 * Used for live updates as the mouse moves. Instead of repainting straight away, which would start a
+			 * full render for every mouse event, the newest constant is passed to the HoverPreviewScheduler. The
+			 * panel is repainted when the preview is ready, and the full image is rendered once the mouse rests.
+			 */
+		}
 	}
 
 
@@ -433,6 +603,7 @@ class ViewerFrame extends JFrame {
 		JButton btnFavourite;
 		JButton btnSaveImage;
 		JComboBox<Complex> comboJulia;
+		JCheckBox chkStats;
 
 		public JuliaControlPanel(){
 			super();
@@ -454,8 +625,13 @@ class ViewerFrame extends JFrame {
 			//comboBox is filled with Complex numbers using the fillComboBox method from the IOHandler class.
 
 			comboJulia = new JComboBox<Complex>(favouriter.fillComboBox());
+			comboJulia.setRenderer(new FavouriteCellRenderer());
+			comboJulia.setMaximumRowCount(6);
 			this.add(comboJulia);
 			comboJulia.addActionListener(new ComboBoxListener());
+			thumbnails.prefetch(favouriter.juliaFavs);
+
+			//Each favourite is shown with a thumbnail. The ones on screen are rendered first, then the rest in the background.
 
 			layout.putConstraint(SpringLayout.WEST, comboJulia, 200, SpringLayout.WEST, this);
 			layout.putConstraint(SpringLayout.NORTH, comboJulia, 27, SpringLayout.NORTH, this);
@@ -466,20 +642,78 @@ class ViewerFrame extends JFrame {
 			layout.putConstraint(SpringLayout.WEST, btnFavourite, 0, SpringLayout.EAST, comboJulia);
 			layout.putConstraint(SpringLayout.NORTH, btnFavourite, 27, SpringLayout.NORTH, this);
 
+			chkStats = new JCheckBox("Stats", showHud);
+			chkStats.addActionListener(new StatsListener());
+			this.add(chkStats);
+			layout.putConstraint(SpringLayout.EAST, chkStats, -5, SpringLayout.EAST, this);
+			layout.putConstraint(SpringLayout.NORTH, chkStats, 5, SpringLayout.NORTH, this);
+
 			juliaCtrlPanel.setSize(600, 100);
 		}
 	}
 
 
+	class FavouriteCellRenderer extends DefaultListCellRenderer {
+		private static final long serialVersionUID = 1L;
+		Icon placeholder = new ImageIcon(new BufferedImage(ThumbnailCache.WIDTH, ThumbnailCache.HEIGHT, BufferedImage.TYPE_INT_RGB));
+
+		public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus){
+			super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+
+			if (value instanceof Complex){
+				BufferedImage thumbnail = thumbnails.get((Complex) value);
+				setIcon((thumbnail != null) ? new ImageIcon(thumbnail) : placeholder);
+			}
+
+			return this;
+		}
+
+		/*
+		 * Draws each favourite as its thumbnail followed by the "x + yi" text. Swing only asks for the cells that
+		 * are on screen, so asking the cache here is what makes the visible thumbnails render first. Until a
+		 * thumbnail is ready a black square of the same size is shown so the list does not jump about.
+		 */
+	}
+
+	class ThumbnailRepaintListener implements ThumbnailCache.ThumbnailListener {
+
+		public void thumbnailReady(Complex constant){
+			if (juliaCtrlPanel == null || juliaCtrlPanel.comboJulia == null){
+				return;
+			}
+
+			juliaCtrlPanel.comboJulia.repaint();
+
+			Object popup = juliaCtrlPanel.comboJulia.getAccessibleContext().getAccessibleChild(0);
+			if (popup instanceof ComboPopup && juliaCtrlPanel.comboJulia.isPopupVisible() == true){
+				((ComboPopup) popup).getList().repaint();
+			}
+
+			//Repaints the combo box, and its list if it is open, so a thumbnail that has just been rendered shows up.
+		}
+	}
+
+	class StatsListener implements ActionListener {
+
+		public void actionPerformed(ActionEvent e){
+			showHud = juliaCtrlPanel.chkStats.isSelected();
+			mandelbrotPanel.repaint();
+			juliaPanel.repaint();
+
+			//Turns the render statistics overlay on both panels on or off.
+		}
+	}
+
 	class UpdateListener implements ActionListener{
 
 		public UpdateListener(){}
 
 		public void actionPerformed(ActionEvent e) {
-			realAxisStart = Double.parseDouble(mandelbrotCtrlPanel.txtXAxisStart.getText());
-			realAxisEnd = Double.parseDouble(mandelbrotCtrlPanel.txtXAxisEnd.getText());
-			imagAxisStart = Double.parseDouble(mandelbrotCtrlPanel.txtYAxisStart.getText());
-			imagAxisEnd = Double.parseDouble(mandelbrotCtrlPanel.txtYAxisEnd.getText());
+			changeAxisBounds(new PreciseBounds(
+					parseAxis(mandelbrotCtrlPanel.txtXAxisStart.getText(), axisBounds.realAxisStart),
+					parseAxis(mandelbrotCtrlPanel.txtXAxisEnd.getText(), axisBounds.realAxisEnd),
+					parseAxis(mandelbrotCtrlPanel.txtYAxisStart.getText(), axisBounds.imagAxisStart),
+					parseAxis(mandelbrotCtrlPanel.txtYAxisEnd.getText(), axisBounds.imagAxisEnd)));
 			numberOfIterations = Integer.parseInt(mandelbrotCtrlPanel.txtIterations.getText());
 
 			//The axis variables are set to whatever the user has entered into the textbox. 
@@ -488,10 +722,25 @@ class ViewerFrame extends JFrame {
 
 			mandelbrotCtrlPanel.updateTextField();
 
+			mandelbrotPanel.renderSource = "UpdateListener";
+			juliaPanel.renderSource = "UpdateListener";
 			mandelbrotPanel.repaint();
 			juliaPanel.repaint();
 
 		}
+
+		public BigDecimal parseAxis(String text, BigDecimal current){
+			if (text.equals(String.format("%.2f", current.doubleValue()))){
+				return current;
+			}
+
+			return new BigDecimal(text.trim());
+
+			/*
+			 * The textboxes only show 2 decimal places. If the user has not changed a textbox the precise value
+			 * is kept, otherwise changing the number of iterations on a deep zoom would reset the axis values.
+			 */
+		}
 	}
 
 	class ResetListener implements ActionListener {
@@ -503,13 +752,12 @@ class ViewerFrame extends JFrame {
 
 
 		public void actionPerformed(ActionEvent e) {
-			realAxisStart = DEFAULTXAXISSTART;
-			realAxisEnd = DEFAULTXAXISEND;
-			imagAxisStart = DEFAULTYAXISSTART;
-			imagAxisEnd = DEFAULTYAXISEND;
+			changeAxisBounds(PreciseBounds.of(DEFAULTXAXISSTART, DEFAULTXAXISEND, DEFAULTYAXISSTART, DEFAULTYAXISEND));
 			numberOfIterations = DEFAULTITERATIONS;
 
 			mandelbrotCtrlPanel.updateTextField();
+			mandelbrotPanel.renderSource = "ResetListener";
+			juliaPanel.renderSource = "ResetListener";
 			mandelbrotPanel.repaint();
 			juliaPanel.repaint();
 
@@ -533,6 +781,7 @@ class ViewerFrame extends JFrame {
 			xReal = mandelbrotPanel.translateXCord(xCord);
 			yImag = mandelbrotPanel.translateYCord(yCord);
 
+			juliaPanel.renderSource = "ClickedOnImageListener";
 			juliaPanel.changeJuliaConstant(xReal, yImag); //change the JuliaSet displayed to correspond what user clicked on
 			mandelbrotCtrlPanel.updateNumberLabel(new Complex(xReal, yImag)); //Update the label to display what user clicked on
 
@@ -556,7 +805,7 @@ class ViewerFrame extends JFrame {
 			yImag = mandelbrotPanel.translateYCord(yCord);
 
 			if (liveUpdates == true){
-				juliaPanel.changeJuliaConstant(xReal, yImag);
+				juliaPanel.hoverJuliaConstant(xReal, yImag);
 				mandelbrotCtrlPanel.updateNumberLabel(new Complex(xReal, yImag));
 			}
 
@@ -574,12 +823,11 @@ class ViewerFrame extends JFrame {
 	class FavouriteButtonListener implements ActionListener {
 
 		public void actionPerformed(ActionEvent e) {
-			favouriter.addFavourite(juliaPanel.juliaConstant); //The juliaConstant Complex number is passed to addFavourite
-			juliaCtrlPanel.comboJulia.addItem(favouriter.juliaFavs.get(favouriter.juliaFavs.size()-1));
-
-			//The juliaConstant added to end of arraylist and the comboBox adds the last item in the arrayList
+			if (favouriter.addFavourite(juliaPanel.juliaConstant) == true){ //The juliaConstant Complex number is passed to addFavourite
+				juliaCtrlPanel.comboJulia.addItem(favouriter.juliaFavs.get(favouriter.juliaFavs.size()-1));
+			}
 
-			favouriter.writeFavouritesClose(); //The newly added juliaConstant is written to the txt file. 
+			//The juliaConstant is added to the end of the arraylist and saved to the favourites log, and the comboBox adds the last item in the arrayList. Nothing is added if it is already a favourite.
 		}
 
 	}
@@ -587,7 +835,15 @@ class ViewerFrame extends JFrame {
 	class SaveImageListener implements ActionListener {
 
 		public void actionPerformed(ActionEvent e) {
-			favouriter.saveImage(juliaPanel.juliaConstant, juliaPanel.juliaCanvas);
+			if (juliaPanel.juliaCanvas != null){
+				FractalView view = juliaPanel.juliaCanvasView;
+				favouriter.saveImage(new Complex(view.juliaReal, view.juliaImag), juliaPanel.juliaCanvas);
+			}
+
+			/*
+			 * Only saves once the first full resolution Julia image has been rendered in the background. The file is
+			 * named after the constant of that image, not the one being shown, which may still be rendering.
+			 */
 		}
 	}
 
@@ -599,6 +855,7 @@ class ViewerFrame extends JFrame {
 			Double xReal = favSelected.getRealNum();
 			Double yImag = favSelected.getImagNum();
 
+			juliaPanel.renderSource = "Favourite combo";
 			juliaPanel.changeJuliaConstant(xReal, yImag);
 
 			mandelbrotCtrlPanel.updateNumberLabel(favSelected);
@@ -622,6 +879,10 @@ class ViewerFrame extends JFrame {
 		}
 
 		public void mousePressed(MouseEvent e) {
+			if (SwingUtilities.isLeftMouseButton(e) == false){
+				return; //Only the left button selects an area to zoom in on, the right button pans.
+			}
+
 			xCordStart = e.getX();
 			yCordStart = e.getY();
 
@@ -640,6 +901,10 @@ class ViewerFrame extends JFrame {
 
 
 		public void mouseReleased(MouseEvent e) {
+			if (SwingUtilities.isLeftMouseButton(e) == false || mandelbrotPanel.dragging == false){
+				return;
+			}
+
 			xCordEnd = e.getX();
 			yCordEnd = e.getY();
 
@@ -647,41 +912,24 @@ class ViewerFrame extends JFrame {
 				return; //Checks that user has actually made a selection.
 			}
 
-			Double realAxisTmp = 0.0;
-			Double realAxisEndTmp = 0.0;
-			Double imagAxisTmp = 0.0;
-			Double imagAxisEndTmp = 0.0;
-
-			/*
-			 * Temp variables are used because otherwise the realAxis and imaginary axis variables
-			 * are changed where the line of code directly below them relies on the initial values.
-			 */
-
-			if (xCordEnd > xCordStart){
-				realAxisTmp = mandelbrotPanel.translateXCord(xCordStart);
-				realAxisEndTmp = mandelbrotPanel.translateXCord(xCordEnd);
-			} else if (xCordStart > xCordEnd){
-				realAxisTmp = mandelbrotPanel.translateXCord(xCordEnd);
-				realAxisEndTmp = mandelbrotPanel.translateXCord(xCordStart);
+			if (xCordEnd == xCordStart || yCordStart == yCordEnd){
+				mandelbrotPanel.dragging = false;
+				mandelbrotPanel.repaint();
+				return; //A selection with no width or no height cannot be zoomed in to.
 			}
 
-			if (yCordEnd > yCordStart){
-				imagAxisTmp = mandelbrotPanel.translateYCord(yCordEnd);
-				imagAxisEndTmp = mandelbrotPanel.translateYCord(yCordStart);
-			} else if (yCordStart > yCordEnd){
-				imagAxisTmp = mandelbrotPanel.translateYCord(yCordEnd);
-				imagAxisEndTmp = mandelbrotPanel.translateYCord(yCordStart);
-			}
+			changeAxisBounds(axisBounds.zoom(xCordStart, yCordStart, xCordEnd, yCordEnd,
+					mandelbrotPanel.getWidth(), mandelbrotPanel.getHeight()));
 
-			realAxisStart = realAxisTmp;
-			realAxisEnd = realAxisEndTmp;
-			imagAxisStart = imagAxisTmp;
-			imagAxisEnd = imagAxisEndTmp;
-
-			//Temporary values are stored in the actual axis variables once the co-ordinate translations are complete.
+			/*
+			 * The corners of the selection are translated into new axis values using the precise axis values,
+			 * so zooming can carry on far past the point where doubles run out of digits. The selection can be
+			 * dragged in any direction, the smaller coordinates always become the start of the axis.
+			 */
 
 			mandelbrotPanel.dragging = false; //User has released mouse so is no longer dragging. 
 
+			mandelbrotPanel.renderSource = "ZoomDragListener";
 			mandelbrotPanel.repaint();
 			mandelbrotCtrlPanel.updateTextField();
 
@@ -695,15 +943,30 @@ class ViewerFrame extends JFrame {
 		public void mouseExited(MouseEvent e) {}
 
 		public void mouseDragged(MouseEvent e) {
+			if (SwingUtilities.isLeftMouseButton(e) == false || mandelbrotPanel.dragging == false){
+				return;
+			}
+
 			endDrag = new Point(e.getX(), e.getY());
 			mandelbrotPanel.currentRect = makeRect(startDrag.x, endDrag.x, startDrag.y, endDrag.y);
 			repaint();
 
+			if (mandelbrotPanel.currentRect.width > 0 && mandelbrotPanel.currentRect.height > 0){
+				int width = mandelbrotPanel.getWidth();
+				int height = mandelbrotPanel.getHeight();
+				FractalView selected = FractalView.mandelbrot(axisBounds.zoom(startDrag.x, startDrag.y, endDrag.x, endDrag.y, width, height),
+						width, height, numberOfIterations);
+				scheduler.prefetchInstead(RenderScheduler.ZOOM, mandelbrotPanel.tileCache, selected);
+			}
+
 			/*
 			 * Co-ordinates of where the cursor is on the JPanel are stored in endDrag.
 			 * A Rectangle object is returned from the method makeRect using the starting/ending x and y co-ordinates.
 			 * The repaint method is called which results in a rectangle representing the users selection being drawn
 			 * on the screen because the dragging variable is set to true. 
+			 *
+			 * The view the selection would zoom in to is also rendered in the background while the user is still
+			 * dragging, the same way mouseReleased works it out, so it is often ready by the time the mouse is let go.
 			 */
 		}
 
@@ -720,6 +983,58 @@ class ViewerFrame extends JFrame {
 
 
 	}
-}
 
+	class PanDragListener implements MouseListener, MouseMotionListener {
+		int xCordLast;
+		int yCordLast;
+		boolean panning = false;
+
+		public void mouseClicked(MouseEvent e) {}
+
+		public void mousePressed(MouseEvent e) {
+			if (SwingUtilities.isRightMouseButton(e) == true){
+				xCordLast = e.getX();
+				yCordLast = e.getY();
+				panning = true;
+			}
+		}
+
+		public void mouseReleased(MouseEvent e) {
+			if (panning == true && SwingUtilities.isRightMouseButton(e) == true){
+				panning = false;
+				mandelbrotCtrlPanel.updateTextField();
+			}
+		}
+
+		public void mouseEntered(MouseEvent e) {}
+
+		public void mouseExited(MouseEvent e) {}
 
+		public void mouseDragged(MouseEvent e) {
+			if (panning == false){
+				return;
+			}
+
+			int xMoved = xCordLast - e.getX();
+			int yMoved = yCordLast - e.getY();
+
+			if (xMoved == 0 && yMoved == 0){
+				return;
+			}
+
+			changeAxisBounds(axisBounds.pan(xMoved, yMoved, mandelbrotPanel.getWidth(), mandelbrotPanel.getHeight()));
+			xCordLast = e.getX();
+			yCordLast = e.getY();
+			mandelbrotPanel.renderSource = "PanDragListener";
+			mandelbrotPanel.repaint();
+
+			/*
+			 * Dragging with the right mouse button moves the view with the mouse. The view is always moved by a whole
+			 * number of pixels, so the BackgroundRenderer can keep the part of the old image that is still on screen
+			 * and only calculate the strip that has been uncovered.
+			 */
+		}
+
+		public void mouseMoved(MouseEvent e) {}
+	}
+}
@@ -0,0 +1,99 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+public class ZoomAnimation {
+	public final FractalType type;
+	public final PreciseBounds startBounds;
+	public final PreciseBounds endBounds;
+	public final int frames;
+	public final int width;
+	public final int height;
+	public final int numberOfIterations;
+	public final double juliaReal;
+	public final double juliaImag;
+
+	private final MathContext mc;
+
+	/*
+	 * The frames of a zoom from one view to another. Between the first and last frame the width and height of
+	 * the view shrink (or grow) by the same factor every frame, so the zoom looks like it runs at a steady speed,
+	 * which a straight line between the axis values would not: most of the frames would be spent near the start.
+	 *
+	 * The centre of the view moves in step with the zoom rather than in a straight line. That way one point of the
+	 * fractal stays at the same place on the screen in every frame and everything else moves straight out from it,
+	 * instead of the view drifting sideways at the start and barely moving at the end.
+	 *
+	 * The axis values are kept as BigDecimals so a Mandelbrot zoom can go deeper than doubles allow.
+	 */
+
+	public ZoomAnimation(FractalType type, PreciseBounds startBounds, PreciseBounds endBounds, int frames,
+			int width, int height, int numberOfIterations, double juliaReal, double juliaImag){
+		this.type = type;
+		this.startBounds = startBounds;
+		this.endBounds = endBounds;
+		this.frames = frames;
+		this.width = width;
+		this.height = height;
+		this.numberOfIterations = numberOfIterations;
+		this.juliaReal = juliaReal;
+		this.juliaImag = juliaImag;
+
+		MathContext startContext = startBounds.getMathContext(width, height);
+		MathContext endContext = endBounds.getMathContext(width, height);
+		this.mc = (startContext.getPrecision() > endContext.getPrecision()) ? startContext : endContext;
+	}
+
+	public FractalView frame(int frame){
+		double t = (frames > 1) ? (double) frame / (frames - 1) : 1.0;
+		PreciseBounds bounds;
+
+		if (frame == 0){
+			bounds = startBounds;
+		} else if (frame >= frames - 1){
+			bounds = endBounds;
+		} else {
+			BigDecimal[] real = interpolate(startBounds.realAxisStart, startBounds.realAxisEnd, endBounds.realAxisStart, endBounds.realAxisEnd, t);
+			BigDecimal[] imag = interpolate(startBounds.imagAxisStart, startBounds.imagAxisEnd, endBounds.imagAxisStart, endBounds.imagAxisEnd, t);
+			bounds = new PreciseBounds(real[0], real[1], imag[0], imag[1]);
+		}
+
+		if (type == FractalType.JULIA){
+			return FractalView.julia(bounds.realAxisStart.doubleValue(), bounds.realAxisEnd.doubleValue(),
+					bounds.imagAxisStart.doubleValue(), bounds.imagAxisEnd.doubleValue(), width, height, numberOfIterations, juliaReal, juliaImag);
+		} else {
+			return FractalView.mandelbrot(bounds, width, height, numberOfIterations);
+		}
+
+		//Frame 0 is exactly the start view and frame (frames - 1) exactly the end view.
+	}
+
+	private BigDecimal[] interpolate(BigDecimal start0, BigDecimal end0, BigDecimal start1, BigDecimal end1, double t){
+		BigDecimal two = BigDecimal.valueOf(2);
+		BigDecimal span0 = end0.subtract(start0, mc);
+		BigDecimal span1 = end1.subtract(start1, mc);
+		BigDecimal centre0 = start0.add(end0, mc).divide(two, mc);
+		BigDecimal centre1 = start1.add(end1, mc).divide(two, mc);
+
+		double ratio = span1.divide(span0, MathContext.DECIMAL64).doubleValue();
+		double factor = Math.pow(ratio, t);
+		BigDecimal span = span0.multiply(new BigDecimal(factor), mc);
+		BigDecimal centre;
+
+		if (Math.abs(ratio - 1.0) < 1e-9){
+			centre = centre0.add(centre1.subtract(centre0, mc).multiply(new BigDecimal(t), mc), mc);
+		} else {
+			double weight = (factor - ratio) / (1.0 - ratio);
+			centre = centre1.add(centre0.subtract(centre1, mc).multiply(new BigDecimal(weight), mc), mc);
+		}
+
+		BigDecimal halfSpan = span.divide(two, mc);
+		return new BigDecimal[] {centre.subtract(halfSpan, mc), centre.add(halfSpan, mc)};
+
+		/*
+		 * One axis of a frame. The span is span0 * (span1 / span0)^t. The centre is chosen so that it is the same
+		 * proportion of the way from the end centre to the start centre as the span is from the end span to the start
+		 * span, which is what keeps that one point still. When the span does not change the view is just moving, so the
+		 * centre moves in a straight line instead.
+		 */
+	}
+}
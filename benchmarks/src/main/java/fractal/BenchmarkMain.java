@@ -0,0 +1,34 @@
+package fractal;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+	public static final String DEFAULTRESULTS = "jmh-results.json";
+
+	/*
+	 * Runs the benchmarks with the usual JMH command line options, except that the results are always written as
+	 * JSON to jmh-results.json unless -rf or -rff say otherwise, so every run leaves a file that can be compared
+	 * with the last one or loaded into a JMH visualiser.
+	 */
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+
+		if (commandLine.getResultFormat().hasValue() == false){
+			options.resultFormat(ResultFormatType.JSON);
+		}
+
+		if (commandLine.getResult().hasValue() == false){
+			options.result(DEFAULTRESULTS);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
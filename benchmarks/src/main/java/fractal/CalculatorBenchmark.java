@@ -0,0 +1,86 @@
+package fractal;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+	@Param({"100", "512", "5000"})
+	int iterations;
+
+	@Param({"boundary", "interior", "exterior"})
+	String point;
+
+	private Calculator mandelbrotCalculator;
+	private Calculator juliaCalculator;
+	private Complex c;
+	private Complex juliaD;
+	private Double pointReal;
+	private Double pointImag;
+
+	/*
+	 * A single point through the recursive Complex calculator, calcIterations for the Mandelbrot set and
+	 * calculateJulia for the Julia set of -0.5 + 0.5i, next to the primitive iterative versions that the
+	 * renderer uses for comparison. The boundary point is in Seahorse Valley and takes a few hundred iterations
+	 * to escape, the interior point is in the main cardioid and never escapes, and the exterior point escapes
+	 * after a couple of iterations.
+	 */
+
+	@Setup
+	public void setUp(){
+		double[] values;
+
+		switch (point){
+			case "boundary": values = new double[] {-0.7436438870371587, 0.13182590420531197}; break;
+			case "interior": values = new double[] {-0.1, 0.1}; break;
+			default: values = new double[] {0.5, 0.5}; break;
+		}
+
+		pointReal = values[0];
+		pointImag = values[1];
+		c = new Complex(pointReal, pointImag);
+		juliaD = new Complex(pointReal, pointImag);
+		mandelbrotCalculator = new Calculator(iterations);
+		juliaCalculator = new Calculator(iterations, new Complex(-0.5, 0.5));
+	}
+
+	@Benchmark
+	public int calcIterations(){
+		mandelbrotCalculator.resetCalculator();
+		return mandelbrotCalculator.calcIterations(c);
+	}
+
+	@Benchmark
+	public int calculateJulia(){
+		juliaD.changeRealNum(pointReal);
+		juliaD.changeImagNum(pointImag);
+		return juliaCalculator.calculateJulia(juliaD);
+
+		//calculateJulia iterates juliaD in place, so it is set back to the starting point every time.
+	}
+
+	@Benchmark
+	public int iterateMandelbrot(){
+		return mandelbrotCalculator.iterateMandelbrot(pointReal, pointImag);
+	}
+
+	@Benchmark
+	public int iterateJulia(){
+		return juliaCalculator.iterateJulia(pointReal, pointImag);
+	}
+}
@@ -0,0 +1,53 @@
+package fractal;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexBenchmark {
+	private final Double startReal = 0.3;
+	private final Double startImag = 0.4;
+	private Complex z = new Complex(startReal, startImag);
+	private Complex d = new Complex(-0.5, 0.5);
+
+	/*
+	 * The Complex operations the recursive calculator does every iteration. Complex stores its parts as Doubles,
+	 * so these mostly measure the boxing. square and add change z, so z is set back to the same value first each
+	 * time (with Doubles boxed once in advance, so the reset allocates nothing), otherwise repeated squaring would
+	 * run off to zero or infinity and the benchmark would be timing something else.
+	 */
+
+	@Benchmark
+	public Complex square(){
+		z.changeRealNum(startReal);
+		z.changeImagNum(startImag);
+		z.square();
+		return z;
+	}
+
+	@Benchmark
+	public Complex add(){
+		z.changeRealNum(startReal);
+		z.changeImagNum(startImag);
+		z.add(d);
+		return z;
+	}
+
+	@Benchmark
+	public Double modulusSquared(){
+		return z.modulusSquared();
+	}
+}
@@ -0,0 +1,103 @@
+package fractal;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+	public static final int WIDTH = 600;
+	public static final int HEIGHT = 500;
+	//The size of both panels in the viewer.
+
+	@Param({"MANDELBROT", "JULIA"})
+	FractalType type;
+
+	@Param({"default", "boundary", "interior"})
+	String scenario;
+
+	@Param({"100", "512", "5000"})
+	int iterations;
+
+	private RenderEngine engine;
+	private FractalView view;
+	private BufferedImage image;
+	private IterationMap map;
+	private Palette palette;
+	private int[] pixels;
+
+	/*
+	 * The two paths of the panels' generateImage, run off screen into a BufferedImage of the panel size. The
+	 * panels are inner classes of ViewerFrame, which is a JFrame and cannot be created without a display, so the
+	 * benchmark builds the same FractalView that currentView() would and makes the same calls generateImage does:
+	 * a full render on every core when nothing has been iterated yet (generateImage), and only the smooth color
+	 * pass over the retained IterationMap when it has (recolour).
+	 *
+	 * For the Mandelbrot set the scenarios are the viewer's starting view, a zoom into Seahorse Valley where most
+	 * pixels are near the boundary, and a view entirely inside the main cardioid. The Julia panel always shows the
+	 * same axes, so there the scenarios change the constant instead: the starting -0.5 + 0.5i, -0.8 + 0.156i
+	 * which is almost all boundary, and -0.1 + 0.1i which is mostly interior.
+	 */
+
+	@Setup
+	public void setUp(){
+		engine = new RenderEngine();
+		view = createView(type, scenario, iterations);
+		image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+		palette = Palette.forView(view);
+		pixels = new int[WIDTH * HEIGHT];
+
+		map = new IterationMap(view);
+		engine.render(map, pixels, new AtomicBoolean(false), new RenderStatistics());
+	}
+
+	@TearDown
+	public void tearDown(){
+		engine.shutdown();
+	}
+
+	static FractalView createView(FractalType type, String scenario, int iterations){
+		if (type == FractalType.JULIA){
+			switch (scenario){
+				case "boundary": return FractalView.julia(-2.0, 2.0, -1.6, 1.6, WIDTH, HEIGHT, iterations, -0.8, 0.156);
+				case "interior": return FractalView.julia(-2.0, 2.0, -1.6, 1.6, WIDTH, HEIGHT, iterations, -0.1, 0.1);
+				default: return FractalView.julia(-2.0, 2.0, -1.6, 1.6, WIDTH, HEIGHT, iterations, -0.5, 0.5);
+			}
+		}
+
+		switch (scenario){
+			case "boundary": return FractalView.mandelbrot(PreciseBounds.of(-0.7485, -0.7425, 0.0975, 0.1025), WIDTH, HEIGHT, iterations);
+			case "interior": return FractalView.mandelbrot(PreciseBounds.of(-0.3, -0.1, -0.08, 0.08), WIDTH, HEIGHT, iterations);
+			default: return FractalView.mandelbrot(PreciseBounds.of(-2.0, 2.0, -1.6, 1.6), WIDTH, HEIGHT, iterations);
+		}
+	}
+
+	@Benchmark
+	public BufferedImage generateImage(){
+		engine.render(view, image);
+		return image;
+	}
+
+	@Benchmark
+	public int[] recolour(){
+		map.colour(palette, pixels);
+		return pixels;
+	}
+}
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorPixelCalculator implements PixelCalculator {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	private static final double ESCAPE = 4.0;
+	private static final int CHECKSTEPS = 8;
+	//How often, in iterations, to check whether every lane of a batch has finished.
+
+	private final FractalView view;
+	private final DoublePixelCalculator scalar;
+	private final double xScale;
+	private final int lanes;
+
+	private final double[] laneReal;
+	private final double[] laneImag;
+	private final double[] laneCounts;
+	private final double[] laneModuli;
+	private final double[] laneZero;
+	private final double[] juliaRealLanes;
+	private final double[] juliaImagLanes;
+	private final double[] laneAlive;
+	private final double[] laneCycled;
+	private final boolean[] laneSettled;
+	private int batch;
+
+	private long settledByBulbTest = 0;
+	private long settledByCycle = 0;
+
+	/*
+	 * Calculates a row of pixels several at a time with the Java Vector API. Each lane of a vector holds one
+	 * pixel, and every lane is put through the same iteration together. Lanes whose point has escaped are masked
+	 * off, so their z and count stop changing, and the batch ends once every lane has escaped or settled.
+	 *
+	 * The arithmetic is done in exactly the same order as Calculator.iterate (no fused multiply-add), the escape
+	 * test is the same !(|z|^2 > 4), and the bulb test and Brent's cycle detection are applied the same way, so
+	 * every lane gets exactly the count and |z|^2 the scalar kernel would. Single pixels, as asked for by the
+	 * subdivision renderer, are passed to the scalar kernel.
+	 *
+	 * The Vector API is an incubator module, so this class is compiled and loaded separately and only used through
+	 * VectorKernel, which falls back to the scalar kernel when the module is not there.
+	 */
+
+	public VectorPixelCalculator(FractalView view){
+		this.view = view;
+		this.scalar = new DoublePixelCalculator(view);
+		this.xScale = view.getXScale();
+		this.lanes = SPECIES.length();
+
+		laneReal = new double[lanes];
+		laneImag = new double[lanes];
+		laneCounts = new double[lanes];
+		laneModuli = new double[lanes];
+		laneZero = new double[lanes];
+		juliaRealLanes = new double[lanes];
+		juliaImagLanes = new double[lanes];
+		laneAlive = new double[lanes];
+
+		Arrays.fill(juliaRealLanes, view.juliaReal);
+		Arrays.fill(juliaImagLanes, view.juliaImag);
+
+		//The starting values of each batch are put in arrays, so no vectors have to be passed between methods.
+		laneCycled = new double[lanes];
+		laneSettled = new boolean[lanes];
+	}
+
+	public static int laneCount(){
+		return SPECIES.length();
+
+		//Number of doubles in the preferred vector size of this processor. 1 means there is nothing to gain.
+	}
+
+	public void prepareTile(int xFrom, int yFrom, int xTo, int yTo){}
+
+	public int calculatePixel(int xCord, int yCord){
+		return scalar.calculatePixel(xCord, yCord);
+	}
+
+	public double getLastModulusSquared(){
+		return scalar.getLastModulusSquared();
+	}
+
+	public long getSettledByBulbTest(){
+		return settledByBulbTest + scalar.getSettledByBulbTest();
+	}
+
+	public long getSettledByCycle(){
+		return settledByCycle + scalar.getSettledByCycle();
+	}
+
+	public void calculateRow(int yCord, int xFrom, int xTo, int[] counts, double[] moduliSquared){
+		double yImag = view.translateYCord(yCord); //The same row as DoublePixelCalculator, also for a band.
+
+		for (int x = xFrom; x < xTo; x += lanes){
+			batch = Math.min(lanes, xTo - x);
+
+			for (int lane = 0; lane < lanes; lane++){
+				int laneX = x + Math.min(lane, batch - 1); //Spare lanes at the end of the row repeat the last pixel.
+				laneReal[lane] = (xScale * laneX) + view.realAxisStart;
+				laneImag[lane] = yImag;
+			}
+
+			if (view.type == FractalType.JULIA){
+				iterateJulia();
+			} else {
+				iterateMandelbrot();
+			}
+
+			for (int lane = 0; lane < batch; lane++){
+				counts[x - xFrom + lane] = (int) laneCounts[lane];
+				moduliSquared[x - xFrom + lane] = laneModuli[lane];
+			}
+		}
+	}
+
+	private void iterateMandelbrot(){
+		for (int lane = 0; lane < lanes; lane++){
+			laneSettled[lane] = Calculator.isInMainBulbs(laneReal[lane], laneImag[lane]);
+			laneAlive[lane] = (laneSettled[lane] == true) ? 0.0 : 1.0;
+		}
+
+		iterate(laneZero, laneZero, laneReal, laneImag, 0);
+
+		for (int lane = 0; lane < lanes; lane++){
+			if (laneSettled[lane] == true){
+				laneCounts[lane] = view.numberOfIterations;
+				laneModuli[lane] = 0.0;
+				settledByBulbTest += (lane < batch) ? 1 : 0;
+			}
+		}
+
+		//Points in the main cardioid or period 2 bulb are masked off from the start, like iterateMandelbrot does.
+	}
+
+	private void iterateJulia(){
+		for (int lane = 0; lane < lanes; lane++){
+			laneSettled[lane] = false;
+			laneAlive[lane] = 1.0;
+		}
+
+		iterate(laneReal, laneImag, juliaRealLanes, juliaImagLanes, 1);
+	}
+
+	private void iterate(double[] zRealStart, double[] zImagStart, double[] cRealLanes, double[] cImagLanes, int count){
+		DoubleVector zReal = DoubleVector.fromArray(SPECIES, zRealStart, 0);
+		DoubleVector zImag = DoubleVector.fromArray(SPECIES, zImagStart, 0);
+		DoubleVector cReal = DoubleVector.fromArray(SPECIES, cRealLanes, 0);
+		DoubleVector cImag = DoubleVector.fromArray(SPECIES, cImagLanes, 0);
+		DoubleVector alive = DoubleVector.fromArray(SPECIES, laneAlive, 0);
+		DoubleVector zero = DoubleVector.zero(SPECIES);
+		DoubleVector laneCount = DoubleVector.broadcast(SPECIES, count);
+		DoubleVector escapeModulus = zero;
+		DoubleVector cycled = zero;
+		DoubleVector savedReal = zReal;
+		DoubleVector savedImag = zImag;
+		int stepsSinceSaved = 0;
+		int savePeriod = 2;
+
+		while (count < view.numberOfIterations){
+			DoubleVector modulusSquared = zReal.mul(zReal).add(zImag.mul(zImag));
+			DoubleVector stillAlive = alive.blend(zero, modulusSquared.compare(VectorOperators.GT, ESCAPE));
+			escapeModulus = escapeModulus.blend(modulusSquared, alive.compare(VectorOperators.GT, stillAlive));
+			alive = stillAlive;
+
+			DoubleVector newReal = zReal.mul(zReal).sub(zImag.mul(zImag)).add(cReal);
+			zImag = zReal.mul(zImag).add(zImag.mul(zReal)).add(cImag);
+			zReal = newReal;
+			laneCount = laneCount.add(alive);
+			count ++;
+
+			DoubleVector repeated = alive.blend(zero, zReal.compare(VectorOperators.NE, savedReal))
+					.blend(zero, zImag.compare(VectorOperators.NE, savedImag));
+			cycled = cycled.add(repeated);
+			alive = alive.sub(repeated);
+
+			stepsSinceSaved ++;
+			DoubleVector saveFlag = DoubleVector.broadcast(SPECIES, (stepsSinceSaved == savePeriod) ? 1.0 : 0.0);
+			VectorMask<Double> save = saveFlag.compare(VectorOperators.GT, 0.0);
+			savedReal = savedReal.blend(zReal, save);
+			savedImag = savedImag.blend(zImag, save);
+			if (stepsSinceSaved == savePeriod){
+				stepsSinceSaved = 0;
+				savePeriod = savePeriod * 2;
+			}
+
+			if ((count % CHECKSTEPS) == 0 && alive.compare(VectorOperators.GT, 0.0).anyTrue() == false){
+				break;
+			}
+		}
+
+		DoubleVector finalModulus = zReal.mul(zReal).add(zImag.mul(zImag));
+		escapeModulus = escapeModulus.blend(finalModulus, alive.compare(VectorOperators.GT, 0.0));
+
+		laneCount.intoArray(laneCounts, 0);
+		escapeModulus.intoArray(laneModuli, 0);
+		cycled.intoArray(laneCycled, 0);
+
+		for (int lane = 0; lane < lanes; lane++){
+			if (laneCycled[lane] > 0.0 && laneSettled[lane] == false){
+				laneCounts[lane] = view.numberOfIterations;
+				settledByCycle += (lane < batch) ? 1 : 0; //Spare lanes at the end of a row are not counted.
+			}
+		}
+
+		/*
+		 * Which lanes are still iterating is kept as a vector of 1s and 0s (alive), and only lanes that are alive
+		 * have their count increased. z is updated in every lane, even ones that have stopped, as blending the old
+		 * value back in would lengthen the chain of instructions each iteration has to wait for. Instead |z|^2 is
+		 * saved at the moment a lane escapes, and after that the lane's z (which soon becomes infinite or NaN) is
+		 * never looked at again. Whether every lane has stopped is only checked every CHECKSTEPS iterations, so
+		 * a batch may run a few extra iterations that change nothing.
+		 *
+		 * A lane stops when |z|^2 passes 4 or when z repeats the last saved value exactly. Lanes found in a cycle,
+		 * like lanes that reach the maximum number of iterations, count as never escaping. Every lane has done the
+		 * same number of steps at any point, so the save points of the cycle detection fall on the same step for
+		 * every lane just as they do in the scalar kernel.
+		 *
+		 * Nothing in the loop is a VectorMask kept between iterations, and the saved values are updated with a
+		 * blend rather than an if. On JDK 17 either of those stops the compiler keeping the vectors in registers,
+		 * and it allocates an object for them on every iteration instead, which is several times slower than scalar.
+		 */
+	}
+}